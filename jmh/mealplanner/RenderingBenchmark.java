@@ -0,0 +1,66 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Meal.toString, MealRenderer (SHOW, full & compact) & DayPlan.toString (PLAN)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    Meal meal;
+    DayPlan dayPlan;
+    PrintWriter writer;
+    MealRenderer fullRenderer;
+    MealRenderer compactRenderer;
+
+    @Setup
+    public void setUp() {
+        meal = new Meal(Category.LUNCH, "chicken salad",
+                List.of("chicken", "lettuce", "tomato", "cucumber", "olive oil", "lemon"));
+        dayPlan = new DayPlan("Monday");
+        dayPlan.setBreakfastMeal("scrambled eggs");
+        dayPlan.setLunchMeal("chicken salad");
+        dayPlan.setDinnerMeal("salmon with rice");
+        writer = new PrintWriter(OutputStream.nullOutputStream());
+        fullRenderer = new MealRenderer(writer, MealRenderer.Format.FULL);
+        compactRenderer = new MealRenderer(writer, MealRenderer.Format.COMPACT);
+    }
+
+    @Benchmark
+    public String mealToString() {
+        return meal.toString();
+    }
+
+    @Benchmark
+    public void mealRenderFull() {
+        fullRenderer.render(meal);
+    }
+
+    @Benchmark
+    public void mealRenderCompact() {
+        compactRenderer.render(meal);
+    }
+
+    @Benchmark
+    public String dayPlanToString() {
+        return dayPlan.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// SEARCH over synthetic catalogs : frequent & rare ingredients, exclusion, name prefix
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+
+    static final int DISTINCT_INGREDIENTS = 5_000;
+    static final int COMMON_INGREDIENTS = 20; // half of the ingredients of a meal come from these
+    static final int INGREDIENTS_PER_MEAL = 6;
+    static final String[] WORDS = {"chicken", "curry", "salad", "pasta", "soup", "stew", "pie", "roast"};
+
+    @Param({"100000", "1000000"})
+    int meals;
+
+    @Param({"ingredient a, -ingredient b", "ingredient a, ingredient c, -ingredient b, name:cu",
+            "ingredient hkh, ingredient hkg", "name:cu, -ingredient b"})
+    String search;
+
+    MealIndex index;
+    MealIndex.Query query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] names = new String[DISTINCT_INGREDIENTS];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "ingredient " + letters(i);
+        }
+        Category[] categories = Category.values();
+        index = new MealIndex();
+        for (int i = 1; i <= meals; i++) {
+            List<String> ingredients = new ArrayList<>(INGREDIENTS_PER_MEAL);
+            for (int j = 0; j < INGREDIENTS_PER_MEAL; j++) {
+                int bound = j % 2 == 0 ? COMMON_INGREDIENTS : names.length;
+                ingredients.add(names[random.nextInt(bound)]);
+            }
+            Meal meal = new Meal(categories[i % categories.length],
+                    WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)], ingredients);
+            meal.id = i;
+            index.add(meal);
+        }
+        query = MealIndex.Query.parse(search);
+    }
+
+    // 0 -> a, 25 -> z, 26 -> ba ... (ingredient names are letters only)
+    static String letters(int number) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.insert(0, (char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return letters.toString();
+    }
+
+    @Benchmark
+    public MealIndex.Result search() {
+        return index.search(query, 20);
+    }
+}
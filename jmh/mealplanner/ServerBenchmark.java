@@ -0,0 +1,162 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// load test of the server mode : 32 client threads against one PlanServer on localhost
+// throughput (ops/ms) and latency percentiles (SampleTime -> p0.50, p0.99 ...) by endpoint
+// gradle jmh -Pjmh.include=ServerBenchmark ; -p repository=postgres uses the database of the mealplanner.db.* settings
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dmealplanner.db.pool.size=16"})
+@Threads(32)
+public class ServerBenchmark {
+
+    static final int MEALS_PER_CATEGORY = 300;
+    static final int FIRST_HOUSEHOLD = 100_000; // away from the interactive & BATCH households
+    static final int PLAN_BODIES = 64;
+    static final String[] INGREDIENTS = {"flour 200 g", "egg 2", "milk 250 ml", "butter 20 g", "tomato 3", "onion",
+            "rice 150 g", "chicken 300 g", "olive oil 2 tbsp", "salt 1 tsp", "cheese 50 g", "lettuce", "apple 2"};
+
+    @Param({"memory"})
+    String repository;
+
+    @Param({"1000"})
+    int households;
+
+    MealRepository meals;
+    PlanServer server;
+    HttpClient client;
+    String base;
+    String[] planBodies;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException, InterruptedException {
+        meals = repository.equals("postgres") ? new JdbcMealRepository(new ConnectionPool(
+                Utils.getSetting("db.url", "jdbc:postgresql://localhost:5432/meals_db"),
+                Utils.getSetting("db.user", "postgres"),
+                Utils.getSetting("db.password", "1111"),
+                Integer.parseInt(Utils.getSetting("db.pool.size", "4"))))
+                : new InMemoryMealRepository();
+        meals = new CachingMealRepository(meals);
+        Random random = new Random(42);
+        List<Meal> missing = new ArrayList<>();
+        for (Category category : Category.values()) {
+            Map<String, Integer> existing = meals.getMealIdsByCategory(category);
+            for (int i = 0; i < MEALS_PER_CATEGORY; i++) {
+                String name = mealName(category, i);
+                if (!existing.containsKey(name)) { // the database keeps the meals of previous runs
+                    List<String> ingredients = new ArrayList<>();
+                    for (int j = 0; j < 5; j++) {
+                        ingredients.add(INGREDIENTS[random.nextInt(INGREDIENTS.length)]);
+                    }
+                    missing.add(MealImporter.parseJsonLine(String.format(
+                            "{\"category\": \"%s\", \"meal\": \"%s\", \"ingredients\": [\"%s\"]}",
+                            category.toString().toLowerCase(), name, String.join("\", \"", ingredients))));
+                }
+            }
+        }
+        meals.addMeals(missing);
+        planBodies = new String[PLAN_BODIES];
+        for (int i = 0; i < PLAN_BODIES; i++) {
+            StringBuilder body = new StringBuilder("{");
+            for (Category category : Category.values()) {
+                body.append(category.ordinal() == 0 ? "\"" : ", \"").append(category.toString().toLowerCase()).append("\": [");
+                for (int day = 0; day < Main.daysOfWeek.length; day++) {
+                    body.append(day == 0 ? "\"" : ", \"")
+                            .append(mealName(category, random.nextInt(MEALS_PER_CATEGORY))).append('"');
+                }
+                body.append(']');
+            }
+            planBodies[i] = body.append('}').toString();
+        }
+        server = new PlanServer(meals, 0, 256);
+        server.start();
+        base = "http://localhost:" + server.getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int household = 0; household < households; household++) { // every shopping list has content
+            check(send(HttpRequest.newBuilder(URI.create(base + "/plan?household=" + (FIRST_HOUSEHOLD + household)))
+                    .PUT(HttpRequest.BodyPublishers.ofString(planBodies[household % PLAN_BODIES]))));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(1);
+        meals.close();
+    }
+
+    // letters only : "load lunch bcd"
+    static String mealName(Category category, int number) {
+        StringBuilder name = new StringBuilder("load ").append(category.toString().toLowerCase()).append(' ');
+        for (char c : Integer.toString(number, 26).toCharArray()) {
+            name.append((char) (Character.digit(c, 26) + 'a'));
+        }
+        return name.toString();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String check(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(response.statusCode() + " " + response.body());
+        }
+        return response.body();
+    }
+
+    private int household() {
+        return FIRST_HOUSEHOLD + ThreadLocalRandom.current().nextInt(households);
+    }
+
+    // plan & shopping list replaced in one transaction
+    @Benchmark
+    public String savePlan() throws IOException, InterruptedException {
+        return check(send(HttpRequest.newBuilder(URI.create(base + "/plan?household=" + household()))
+                .PUT(HttpRequest.BodyPublishers.ofString(planBodies[ThreadLocalRandom.current().nextInt(PLAN_BODIES)]))));
+    }
+
+    @Benchmark
+    public String getPlan() throws IOException, InterruptedException {
+        return check(send(HttpRequest.newBuilder(URI.create(base + "/plan?household=" + household()))));
+    }
+
+    @Benchmark
+    public String getShoppingList() throws IOException, InterruptedException {
+        return check(send(HttpRequest.newBuilder(URI.create(base + "/shopping-list?household=" + household()))));
+    }
+
+    @Benchmark
+    public String search() throws IOException, InterruptedException {
+        return check(send(HttpRequest.newBuilder(URI.create(base + "/search?q=chicken,-milk,name:load&limit=20"))));
+    }
+}
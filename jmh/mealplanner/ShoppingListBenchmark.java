@@ -0,0 +1,122 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// shopping list aggregation over synthetic catalogs with amounts : a week plan (in-memory repository),
+// a month of plans for many households summed over parallel primitive arrays vs a map by name & unit
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShoppingListBenchmark {
+
+    static final int DISTINCT_INGREDIENTS = 5_000;
+    static final int INGREDIENTS_PER_MEAL = 6;
+    static final int MONTH_SLOTS = 28 * 3;
+    static final Amount.Unit[] UNITS = {Amount.Unit.PIECE, Amount.Unit.G, Amount.Unit.KG, Amount.Unit.ML, Amount.Unit.TBSP};
+
+    @Param({"1000", "100000", "1000000"})
+    int meals;
+
+    @Param({"100"})
+    int households;
+
+    InMemoryMealRepository repository;
+    int[][] mealKeys; // ingredient id * 3 + dimension, by meal index
+    long[][] mealAmounts;
+    String[][] mealNames; // ingredient names, by meal index
+    int[] month; // meal index of every slot of every household
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] names = new String[DISTINCT_INGREDIENTS];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "ingredient " + Integer.toString(i, 26).replace('0', 'z');
+        }
+        Category[] categories = Category.values();
+        repository = new InMemoryMealRepository();
+        mealKeys = new int[meals][INGREDIENTS_PER_MEAL];
+        mealAmounts = new long[meals][INGREDIENTS_PER_MEAL];
+        mealNames = new String[meals][INGREDIENTS_PER_MEAL];
+        List<Meal> chunk = new ArrayList<>(MealImporter.CHUNK_SIZE);
+        for (int i = 0; i < meals; i++) {
+            List<String> ingredients = new ArrayList<>(INGREDIENTS_PER_MEAL);
+            List<Amount> amounts = new ArrayList<>(INGREDIENTS_PER_MEAL);
+            for (int j = 0; j < INGREDIENTS_PER_MEAL; j++) {
+                int ingredient = random.nextInt(names.length);
+                Amount amount = Amount.of(Integer.toString(1 + random.nextInt(500)), UNITS[ingredient % UNITS.length]);
+                ingredients.add(names[ingredient]);
+                amounts.add(amount);
+                mealKeys[i][j] = IngredientTotals.key(ingredient, amount.dimension);
+                mealAmounts[i][j] = amount.thousandths;
+                mealNames[i][j] = names[ingredient];
+            }
+            chunk.add(new Meal(categories[i % categories.length], "meal " + i, ingredients, amounts));
+            if (chunk.size() == MealImporter.CHUNK_SIZE || i == meals - 1) {
+                repository.addMeals(chunk);
+                chunk.clear();
+            }
+        }
+        for (String day : Main.daysOfWeek) {
+            for (Category category : categories) {
+                int mealId = 1 + random.nextInt(meals);
+                repository.addPlan(Main.HOUSEHOLD_ID, day, category, mealId);
+            }
+        }
+        month = new int[households * MONTH_SLOTS];
+        for (int i = 0; i < month.length; i++) {
+            month[i] = random.nextInt(meals);
+        }
+    }
+
+    @Benchmark
+    public void buildShoppingList(Blackhole blackhole) {
+        repository.buildShoppingList(Main.HOUSEHOLD_ID);
+        repository.forEachShoppingListItem(Main.HOUSEHOLD_ID, blackhole::consume);
+    }
+
+    @Benchmark
+    public long[] monthForHouseholds() {
+        long[] totals = new long[IngredientTotals.size(DISTINCT_INGREDIENTS)];
+        for (int meal : month) {
+            IngredientTotals.add(totals, mealKeys[meal], mealAmounts[meal], 1);
+        }
+        return totals;
+    }
+
+    // same totals keyed by "name unit" in a HashMap
+    @Benchmark
+    public Map<String, Long> monthForHouseholdsMap() {
+        Map<String, Long> totals = new HashMap<>();
+        Amount.Dimension[] dimensions = Amount.Dimension.values();
+        for (int meal : month) {
+            for (int j = 0; j < INGREDIENTS_PER_MEAL; j++) {
+                String key = mealNames[meal][j] + " " + dimensions[mealKeys[meal][j] % IngredientTotals.DIMENSIONS].name();
+                totals.merge(key, mealAmounts[meal][j], Long::sum);
+            }
+        }
+        return totals;
+    }
+}
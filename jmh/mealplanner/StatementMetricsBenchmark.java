@@ -0,0 +1,69 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+import javax.sql.RowSetMetaData;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+// client side cost of the row counting of PooledConnection.executeQuery : a SHOW like loop (getInt, getString,
+// getLong by row) over an in-memory result set, as returned by the driver (metrics off) or counted (metrics on)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementMetricsBenchmark {
+
+    @Param({"driver", "counted"})
+    String resultSet;
+
+    CachedRowSet rows;
+    ResultSet read;
+
+    @Setup
+    public void setUp() throws SQLException {
+        rows = RowSetProvider.newFactory().createCachedRowSet();
+        RowSetMetaData metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(3);
+        metaData.setColumnType(1, Types.INTEGER);
+        metaData.setColumnType(2, Types.VARCHAR);
+        metaData.setColumnType(3, Types.BIGINT);
+        rows.setMetaData(metaData);
+        for (int i = 0; i < 10_000; i++) {
+            rows.moveToInsertRow();
+            rows.updateInt(1, i);
+            rows.updateString(2, "ingredient " + i % 500);
+            rows.updateLong(3, i * 1_000L);
+            rows.insertRow();
+        }
+        rows.moveToCurrentRow();
+        read = resultSet.equals("counted") ? new CountingResultSet(rows, Metrics.timer("Benchmark", "rows")) : rows;
+    }
+
+    @Benchmark
+    public long readRows() throws SQLException {
+        rows.beforeFirst();
+        long sum = 0;
+        while (read.next()) {
+            sum += read.getInt(1) + read.getString(2).length() + read.getLong(3);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,56 @@
+package mealplanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Utils.isValid & ingredient splitting of the ADD command (names only & with amounts)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    String validName = "crème brûlée with raspberries";
+    String invalidName = "crème brûlée with raspberries 2";
+    // near miss : long valid prefix, one bad character at the end
+    String nearMiss = "a".repeat(28) + "'b".repeat(8) + "!";
+    String ingredients = "flour, sugar, eggs, butter, milk, baking powder, salt, vanilla sugar";
+    String amounts = "flour 500 g, sugar 200g, eggs 3, butter 250 g, milk 0.5 l, baking powder 1 tsp, salt, vanilla sugar 8 g";
+
+    @Benchmark
+    public boolean isValidMatch() {
+        return Utils.isValid(validName);
+    }
+
+    @Benchmark
+    public boolean isValidNoMatch() {
+        return Utils.isValid(invalidName);
+    }
+
+    @Benchmark
+    public boolean isValidNearMiss() {
+        return Utils.isValid(nearMiss);
+    }
+
+    @Benchmark
+    public List<String> parseIngredients() {
+        return Utils.parseIngredients(ingredients);
+    }
+
+    @Benchmark
+    public List<Ingredient> parseAmounts() {
+        return Utils.parseAmounts(amounts);
+    }
+}
@@ -0,0 +1,183 @@
+package mealplanner;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// quantity of an ingredient : dimension (pieces, mass, volume) + value in thousandths of its base unit (piece, g, ml)
+// units of the same dimension convert into each other, sums are exact long additions
+public final class Amount {
+
+    public static final Amount ONE_PIECE = new Amount(Dimension.COUNT, 1_000);
+    private static final Map<String, Unit> UNITS = new HashMap<>(); // symbol or alias -> unit
+
+    public enum Dimension {
+        COUNT("pc"),
+        MASS("g"),
+        VOLUME("ml");
+
+        final String symbol; // base unit, stored in the database
+
+        Dimension(String symbol) {
+            this.symbol = symbol;
+        }
+
+        // dimension of a stored base unit symbol
+        public static Dimension of(String symbol) {
+            for (Dimension dimension : values()) {
+                if (dimension.symbol.equals(symbol)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Unknown unit " + symbol);
+        }
+    }
+
+    public enum Unit {
+        PIECE(Dimension.COUNT, 1_000, "pc", "pcs", "piece", "pieces"),
+        G(Dimension.MASS, 1_000, "g", "gram", "grams"),
+        KG(Dimension.MASS, 1_000_000, "kg"),
+        ML(Dimension.VOLUME, 1_000, "ml"),
+        CL(Dimension.VOLUME, 10_000, "cl"),
+        L(Dimension.VOLUME, 1_000_000, "l"),
+        TSP(Dimension.VOLUME, 4_929, "tsp"),
+        TBSP(Dimension.VOLUME, 14_787, "tbsp"),
+        CUP(Dimension.VOLUME, 236_588, "cup", "cups");
+
+        final Dimension dimension;
+        final long thousandths; // base unit thousandths in one unit
+        final String symbol;
+        final String[] aliases;
+
+        Unit(Dimension dimension, long thousandths, String symbol, String... aliases) {
+            this.dimension = dimension;
+            this.thousandths = thousandths;
+            this.symbol = symbol;
+            this.aliases = aliases;
+        }
+
+        // unit of a symbol or alias ("kg", "grams" ...), null if unknown
+        public static Unit of(String text) {
+            return UNITS.get(text.toLowerCase(Locale.ROOT));
+        }
+
+        // unit of text[from, to), null if unknown, same as of(text.substring(from, to)) without the copies
+        public static Unit of(String text, int from, int to) {
+            int length = to - from;
+            for (Unit unit : values()) {
+                if (matches(text, from, length, unit.symbol)) {
+                    return unit;
+                }
+                for (String alias : unit.aliases) {
+                    if (matches(text, from, length, alias)) {
+                        return unit;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(String text, int from, int length, String name) {
+            return name.length() == length && text.regionMatches(true, from, name, 0, length);
+        }
+    }
+
+    static {
+        for (Unit unit : Unit.values()) {
+            UNITS.put(unit.symbol, unit);
+            for (String alias : unit.aliases) {
+                UNITS.put(alias, unit);
+            }
+        }
+    }
+
+    final Dimension dimension;
+    final long thousandths; // of the base unit of dimension
+
+    public Amount(Dimension dimension, long thousandths) {
+        this.dimension = dimension;
+        this.thousandths = thousandths;
+    }
+
+    // "1.5" + kg -> 1 500 000 thousandths of g, null if value is not a number >= 0
+    public static Amount of(String value, Unit unit) {
+        try {
+            BigDecimal number = new BigDecimal(value);
+            if (number.signum() < 0) {
+                return null;
+            }
+            return new Amount(unit.dimension, number.multiply(BigDecimal.valueOf(unit.thousandths))
+                    .setScale(0, RoundingMode.HALF_UP).longValueExact());
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    public boolean isZero() {
+        return thousandths == 0;
+    }
+
+    // largest unit in which the amount is at least 1 : kg from 1000 g, l from 1000 ml, pieces as they are
+    public Unit displayUnit() {
+        return switch (dimension) {
+            case COUNT -> Unit.PIECE;
+            case MASS -> Math.abs(thousandths) >= Unit.KG.thousandths ? Unit.KG : Unit.G;
+            case VOLUME -> Math.abs(thousandths) >= Unit.L.thousandths ? Unit.L : Unit.ML;
+        };
+    }
+
+    // value in displayUnit(), at most 2 decimals : "1.25", "500", "0.5"
+    public String displayValue() {
+        Unit unit = displayUnit();
+        return BigDecimal.valueOf(thousandths).divide(BigDecimal.valueOf(unit.thousandths), 2, RoundingMode.HALF_UP)
+                .stripTrailingZeros().toPlainString();
+    }
+
+    // displayValue() without BigDecimal (display units are 1 000 or 1 000 000 thousandths), for text rendered per meal
+    public StringBuilder appendDisplayValue(StringBuilder text) {
+        long unit = displayUnit().thousandths;
+        long magnitude = Math.abs(thousandths);
+        if (magnitude > Long.MAX_VALUE / 100) {
+            return text.append(displayValue());
+        }
+        long hundredths = (magnitude * 100 + unit / 2) / unit; // rounded half up, away from zero
+        if (thousandths < 0 && hundredths > 0) {
+            text.append('-');
+        }
+        text.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            text.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) {
+                text.append(fraction % 10);
+            }
+        }
+        return text;
+    }
+
+    // toString() appended to text
+    public StringBuilder appendTo(StringBuilder text) {
+        if (dimension == Dimension.COUNT) {
+            return appendDisplayValue(text.append('x'));
+        }
+        return appendDisplayValue(text).append(' ').append(displayUnit().symbol);
+    }
+
+    // "x3" for pieces, "1.25 kg" / "500 ml" otherwise
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(16)).toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Amount amount && amount.dimension == dimension && amount.thousandths == thousandths;
+    }
+
+    @Override
+    public int hashCode() {
+        return dimension.hashCode() * 31 + Long.hashCode(thousandths);
+    }
+}
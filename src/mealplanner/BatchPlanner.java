@@ -0,0 +1,115 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// generate & save week plans of many households at once, one task per household
+// each household is written with one transaction (MealRepository.savePlan) : plan, shopping list & week of history
+public class BatchPlanner {
+
+    private final MealRepository repository;
+    private final PlanGenerator generator;
+    private final long budgetMillis;
+    private final int threads;
+
+    public BatchPlanner(MealRepository repository, PlanGenerator generator, long budgetMillis, int threads) {
+        this.repository = repository;
+        this.generator = generator;
+        this.budgetMillis = budgetMillis;
+        this.threads = threads;
+    }
+
+    // plan households firstHouseholdId .. firstHouseholdId + count - 1, then display throughput & latency
+    public void run(int firstHouseholdId, int count) throws InterruptedException {
+        long[] latencies = new long[count]; // -1 : household not planned
+        Arrays.fill(latencies, -1);
+        AtomicInteger infeasible = new AtomicInteger();
+        List<String> errors = new ArrayList<>();
+        LocalDate week = Utils.weekStart(Utils.today());
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(count);
+        try (Closer closer = new Closer(Utils.newTaskExecutor(threads))) {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                futures.add(closer.executor.submit(() -> {
+                    long taskStart = System.nanoTime();
+                    if (planHousehold(firstHouseholdId + index, week)) {
+                        latencies[index] = System.nanoTime() - taskStart;
+                    } else {
+                        infeasible.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    errors.add(e.getCause().getMessage());
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        report(count, elapsed, latencies, infeasible.get(), errors);
+    }
+
+    // false if no plan meets the constraints
+    private boolean planHousehold(int householdId, LocalDate week) throws SQLException {
+        PlanGenerator.Result result = generator.generate(budgetMillis, 1, householdId);
+        if (result == null) {
+            return false;
+        }
+        repository.savePlan(householdId, result.mealIds, week);
+        return true;
+    }
+
+    // throughput & latency of the planned households only, infeasible & failed ones counted apart
+    private static void report(int count, long elapsedNanos, long[] latencies, int infeasible, List<String> errors) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        long[] sorted = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        System.out.printf("Planned %d of %d households in %.2f s: %.1f households/s.%n",
+                sorted.length, count, seconds, sorted.length / Math.max(seconds, 1e-9));
+        if (sorted.length > 0) {
+            System.out.printf("Latency per household: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms.%n",
+                    Utils.percentile(sorted, 50) / 1e6, Utils.percentile(sorted, 95) / 1e6,
+                    Utils.percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+        if (infeasible > 0) {
+            System.out.printf("%d households could not be planned with these constraints.%n", infeasible);
+        }
+        if (!errors.isEmpty()) {
+            System.out.printf("%d households failed, first error: %s%n", errors.size(), errors.get(0));
+        }
+    }
+
+    // shutdown & wait for the executor at the end of the try block
+    private static class Closer implements AutoCloseable {
+        final ExecutorService executor;
+
+        Closer(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        // interrupted : running tasks are interrupted too, the flag is kept for the caller
+        @Override
+        public void close() {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    System.out.println("Waiting for households to be saved...");
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// read-through cache of the meal lists by category (read by PLAN, REPLAN & PUT /plan) in front of another repository
+// one entry per category -> never evicted, dropped only when meals are added to the category
+public class CachingMealRepository implements MealRepository {
+
+    private final MealRepository repository;
+    private final ReadThroughCache<Category, Map<String, Integer>> mealIdsByCategory;
+
+    public CachingMealRepository(MealRepository repository) {
+        this.repository = repository;
+        this.mealIdsByCategory = new ReadThroughCache<>("meals by category");
+        Metrics.registerCache("meals by category", mealIdsByCategory);
+    }
+
+    public ReadThroughCache<Category, Map<String, Integer>> getMealIdsByCategoryCache() {
+        return mealIdsByCategory;
+    }
+
+    // new meals change the meal list of their category only
+    @Override
+    public int[] addMeals(List<Meal> meals) throws SQLException {
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        for (Meal meal : meals) {
+            categories.add(meal.category);
+        }
+        try {
+            return repository.addMeals(meals);
+        } finally {
+            for (Category category : categories) {
+                mealIdsByCategory.invalidate(category);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasMeals(Category category) throws SQLException {
+        return repository.hasMeals(category);
+    }
+
+    @Override
+    public int forEachMeal(Category category, Consumer<Meal> consumer) throws SQLException {
+        return repository.forEachMeal(category, consumer);
+    }
+
+    @Override
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) throws SQLException {
+        return repository.forEachMeal(category, offset, limit, consumer);
+    }
+
+    @Override
+    public Map<String, Integer> getMealIdsByCategory(Category category) throws SQLException {
+        return mealIdsByCategory.get(category,
+                key -> Collections.unmodifiableMap(repository.getMealIdsByCategory(key)));
+    }
+
+    @Override
+    public List<String> getIngredientsByMealId(int mealId) throws SQLException {
+        return repository.getIngredientsByMealId(mealId);
+    }
+
+    @Override
+    public int getMaxMealId() throws SQLException {
+        return repository.getMaxMealId();
+    }
+
+    @Override
+    public long getCatalogVersion() throws SQLException {
+        return repository.getCatalogVersion();
+    }
+
+    @Override
+    public void clearPlan(int householdId) throws SQLException {
+        repository.clearPlan(householdId);
+    }
+
+    @Override
+    public void addPlan(int householdId, String day, Category category, int mealId) throws SQLException {
+        repository.addPlan(householdId, day, category, mealId);
+    }
+
+    @Override
+    public void addPlans(int householdId, int[] slots, int[] mealIds) throws SQLException {
+        repository.addPlans(householdId, slots, mealIds);
+    }
+
+    @Override
+    public void savePlan(int householdId, int[] mealIds, LocalDate weekStart) throws SQLException {
+        repository.savePlan(householdId, mealIds, weekStart);
+    }
+
+    @Override
+    public boolean hasPlan(int householdId) throws SQLException {
+        return repository.hasPlan(householdId);
+    }
+
+    @Override
+    public String[][] getWeekPlan(int householdId) throws SQLException {
+        return repository.getWeekPlan(householdId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId) throws SQLException {
+        return repository.replanSlot(householdId, day, category, mealId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart)
+            throws SQLException {
+        return repository.replanSlot(householdId, day, category, mealId, weekStart);
+    }
+
+    @Override
+    public void setPantryItem(int householdId, String ingredient, Amount amount) throws SQLException {
+        repository.setPantryItem(householdId, ingredient, amount);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId) throws SQLException {
+        repository.buildShoppingList(householdId);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId, LocalDate weekStart) throws SQLException {
+        repository.buildShoppingList(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) throws SQLException {
+        repository.forEachShoppingListItem(householdId, consumer);
+    }
+
+    @Override
+    public void recordWeek(int householdId, LocalDate weekStart) throws SQLException {
+        repository.recordWeek(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer)
+            throws SQLException {
+        repository.forEachRangeItem(householdId, first, last, consumer);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        repository.flush();
+    }
+
+    @Override
+    public void close() {
+        if (Boolean.parseBoolean(Utils.getSetting("cache.stats", "false"))) {
+            System.err.println(mealIdsByCategory);
+        }
+        repository.close();
+    }
+}
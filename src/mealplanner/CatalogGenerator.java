@@ -0,0 +1,129 @@
+package mealplanner;
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// synthetic catalog of production size : 4-12 ingredients per meal drawn from a Zipf distribution over ingredient ranks
+// (rank 0 in most meals like salt or onion, then a long tail of rare ones), each ingredient keeps one unit
+// meals are written with addMeals, the insert path of ADD & IMPORT, one transaction per chunk
+// same seed & sizes -> same catalog
+public class CatalogGenerator {
+
+    private static final int MIN_INGREDIENTS = 4;
+    private static final int MAX_INGREDIENTS = 12;
+    private static final String[] FOODS = {"salt", "onion", "garlic", "olive oil", "butter", "egg", "flour", "milk",
+            "sugar", "tomato", "pepper", "water", "lemon", "rice", "chicken", "potato", "carrot", "cheese", "parsley",
+            "cream", "beef", "basil", "mushroom", "spinach", "ginger", "honey", "yogurt", "lentils", "pork", "apple"};
+    private static final String[] STYLES = {"spicy", "creamy", "green", "rustic", "quick", "baked", "grilled", "smoky",
+            "lemony", "sweet", "crispy", "slow"};
+    private static final String[] DISHES = {"soup", "salad", "stew", "curry", "pie", "pasta", "roast", "bowl",
+            "omelette", "risotto", "tart", "wrap", "gratin", "noodles"};
+
+    private final Random random;
+    private final double[] cumulative; // cumulative[rank] = weight of ranks 0..rank, weight = 1 / (rank + 1)^exponent
+    private final String[] names; // by rank
+    private final Amount.Dimension[] dimensions; // by rank
+
+    public CatalogGenerator(int ingredients, double exponent, long seed) {
+        if (ingredients < MAX_INGREDIENTS) {
+            throw new IllegalArgumentException("At least " + MAX_INGREDIENTS + " ingredients are needed");
+        }
+        this.random = new Random(seed);
+        this.cumulative = new double[ingredients];
+        this.names = new String[ingredients];
+        this.dimensions = new Amount.Dimension[ingredients];
+        Amount.Dimension[] all = Amount.Dimension.values();
+        double total = 0;
+        for (int rank = 0; rank < ingredients; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+            // "salt", "onion" ... then "salt b", "onion b" ... "salt ba" (letters only, unique by rank)
+            names[rank] = rank < FOODS.length ? FOODS[rank]
+                    : FOODS[rank % FOODS.length] + " " + letters(rank / FOODS.length);
+            dimensions[rank] = all[random.nextInt(all.length)];
+        }
+    }
+
+    // 0 -> a, 25 -> z, 26 -> ba ...
+    static String letters(int number) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return letters.reverse().toString();
+    }
+
+    // category & unique name from the meal number : "smoky curry bcd"
+    static Category category(int number) {
+        return Category.values()[number % Category.values().length];
+    }
+
+    static String mealName(int number) {
+        return STYLES[Math.floorMod(number * 31, STYLES.length)] + " " + DISHES[Math.floorMod(number * 17, DISHES.length)]
+                + " " + letters(number);
+    }
+
+    // rank drawn with probability weight(rank) / total
+    private int nextRank() {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, value);
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    // typical amount of one ingredient in one meal : 1-4 pieces, 20-500 g, 5-250 ml
+    private Amount nextAmount(Amount.Dimension dimension) {
+        return switch (dimension) {
+            case COUNT -> new Amount(dimension, (1 + random.nextInt(4)) * 1_000L);
+            case MASS -> new Amount(dimension, (2 + random.nextInt(49)) * 10_000L);
+            case VOLUME -> new Amount(dimension, (1 + random.nextInt(50)) * 5_000L);
+        };
+    }
+
+    // meal number (0, 1, 2 ...) with distinct ingredients
+    public Meal meal(int number) {
+        int count = MIN_INGREDIENTS + random.nextInt(MAX_INGREDIENTS - MIN_INGREDIENTS + 1);
+        int[] ranks = new int[count];
+        List<String> ingredients = new ArrayList<>(count);
+        List<Amount> amounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int rank = nextRank();
+            for (int j = 0; j < i; j++) {
+                if (ranks[j] == rank) {
+                    rank = nextRank(); // frequent ranks repeat often, draw again and check all over
+                    j = -1;
+                }
+            }
+            ranks[i] = rank;
+            ingredients.add(names[rank]);
+            amounts.add(nextAmount(dimensions[rank]));
+        }
+        return new Meal(category(number), mealName(number), ingredients, amounts);
+    }
+
+    // add meals first .. first + count - 1 in chunks of MealImporter.CHUNK_SIZE -> return ingredient rows written
+    // progress (if not null) gets one line per million meals
+    public long generate(MealRepository repository, int first, int count, PrintStream progress) throws SQLException {
+        long start = System.nanoTime();
+        long rows = 0;
+        List<Meal> chunk = new ArrayList<>(MealImporter.CHUNK_SIZE);
+        for (int number = first; number < first + count; number++) {
+            Meal meal = meal(number);
+            rows += meal.ingredients.size();
+            chunk.add(meal);
+            if (chunk.size() == MealImporter.CHUNK_SIZE || number == first + count - 1) {
+                repository.addMeals(chunk);
+                chunk.clear();
+            }
+            int done = number - first + 1;
+            if (progress != null && done % 1_000_000 == 0 && done < count) {
+                progress.printf("Generated %d meals in %.1f s.%n", done, (System.nanoTime() - start) / 1e9);
+            }
+        }
+        return rows;
+    }
+}
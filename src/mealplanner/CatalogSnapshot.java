@@ -0,0 +1,350 @@
+package mealplanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// read-only copy of the catalog (meals, categories, ingredients) in one file, memory-mapped and read in place
+// header (64 bytes) | meal records | ingredient refs | ingredient amounts | meals of each category by name
+// | string offsets | strings (UTF-8)
+// meal record = meal_id, category ordinal, name string, first ingredient ref (4 ints, ordered by meal_id)
+// ingredient ref = name string * 3 + dimension, amount = long (thousandths of piece, g or ml), same index
+// meal & ingredient names are stored once in the string table and referred to by index
+// the header keeps the catalog version of the database the meals were read from (MealRepository.getCatalogVersion)
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x4D50534E; // "MPSN"
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_INTS = 4;
+    private static final int CATEGORY_COUNTS = 28; // header offset of the meal count of each category
+
+    private final MappedByteBuffer buffer;
+    private final int mealCount;
+    private final int maxMealId;
+    private final long catalogVersion;
+    private final int refCount;
+    private final int stringCount;
+    private final int[] categoryCounts = new int[Category.values().length];
+    private final int[] categoryStarts = new int[Category.values().length];
+    private final int refs;
+    private final int amounts;
+    private final int stringOffsets;
+    private final int strings;
+
+    private CatalogSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a meal planner snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != SchemaMigrations.latestVersion()) {
+            throw new IOException(String.format("snapshot format %d / schema %d, expected %d / %d",
+                    buffer.getInt(4), buffer.getInt(8), FORMAT_VERSION, SchemaMigrations.latestVersion()));
+        }
+        mealCount = buffer.getInt(12);
+        maxMealId = buffer.getInt(16);
+        catalogVersion = buffer.getLong(56);
+        refCount = buffer.getInt(20);
+        stringCount = buffer.getInt(24);
+        long position = HEADER_SIZE + 4L * RECORD_INTS * mealCount;
+        refs = (int) position;
+        position += 4L * refCount;
+        amounts = (int) position;
+        position += 8L * refCount;
+        for (int i = 0; i < categoryCounts.length; i++) {
+            categoryCounts[i] = buffer.getInt(CATEGORY_COUNTS + 4 * i);
+            categoryStarts[i] = (int) position;
+            position += 4L * categoryCounts[i];
+        }
+        stringOffsets = (int) position;
+        position += 4L * (stringCount + 1);
+        strings = (int) position;
+        if (position > buffer.capacity() || position + buffer.getInt(stringOffsets + 4 * stringCount) != buffer.capacity()) {
+            throw new IOException("truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        if (crc.getValue() != buffer.getLong(48)) {
+            throw new IOException("snapshot checksum mismatch");
+        }
+    }
+
+    // map & check the file (format, schema version, size, CRC32 of everything after the header)
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("snapshot larger than 2 GB");
+            }
+            return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("corrupted snapshot header", e);
+        }
+    }
+
+    // write the catalog of repository (one pass over the meals + the sorted meal list of each category)
+    // to a temporary file, then move it over path -> return number of meals
+    // catalog version read first : meals added during the pass make the snapshot older than the database, not newer
+    public static int write(MealRepository repository, Path path) throws SQLException, IOException {
+        long catalogVersion = repository.getCatalogVersion();
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> stringBytes = new ArrayList<>();
+        int[][] records = {new int[1024]};
+        int[][] ingredientRefs = {new int[4096]};
+        long[][] ingredientAmounts = {new long[4096]};
+        int[] counts = new int[2]; // meals, refs
+        repository.forEachMeal(null, meal -> {
+            if (counts[0] * RECORD_INTS == records[0].length) {
+                records[0] = Arrays.copyOf(records[0], records[0].length * 2);
+            }
+            int record = counts[0]++ * RECORD_INTS;
+            records[0][record] = meal.id;
+            records[0][record + 1] = meal.category.ordinal();
+            records[0][record + 2] = string(meal.name, stringIds, stringBytes);
+            records[0][record + 3] = counts[1];
+            for (int i = 0; i < meal.ingredients.size(); i++) {
+                if (counts[1] == ingredientRefs[0].length) {
+                    ingredientRefs[0] = Arrays.copyOf(ingredientRefs[0], ingredientRefs[0].length * 2);
+                    ingredientAmounts[0] = Arrays.copyOf(ingredientAmounts[0], ingredientAmounts[0].length * 2);
+                }
+                Amount amount = meal.getAmount(i);
+                ingredientRefs[0][counts[1]] = string(meal.ingredients.get(i), stringIds, stringBytes)
+                        * IngredientTotals.DIMENSIONS + amount.dimension.ordinal();
+                ingredientAmounts[0][counts[1]++] = amount.thousandths;
+            }
+        });
+        int mealCount = counts[0];
+        int[] mealIds = new int[mealCount];
+        for (int i = 0; i < mealCount; i++) {
+            mealIds[i] = records[0][i * RECORD_INTS];
+        }
+        Category[] categories = Category.values();
+        int[][] byName = new int[categories.length][];
+        for (Category category : categories) {
+            Map<String, Integer> sorted = repository.getMealIdsByCategory(category);
+            int[] order = new int[sorted.size()];
+            int i = 0;
+            for (int mealId : sorted.values()) {
+                int record = Arrays.binarySearch(mealIds, mealId);
+                if (record >= 0) { // meals added after the first pass are not in the snapshot
+                    order[i++] = record;
+                }
+            }
+            byName[category.ordinal()] = Arrays.copyOf(order, i);
+        }
+
+        long size = 4L * RECORD_INTS * mealCount + 12L * counts[1] + 4L * (stringBytes.size() + 1);
+        for (int[] order : byName) {
+            size += 4L * order.length;
+        }
+        for (byte[] bytes : stringBytes) {
+            size += bytes.length;
+        }
+        if (HEADER_SIZE + size > Integer.MAX_VALUE) {
+            throw new IOException("catalog too large for a snapshot");
+        }
+        ByteBuffer body = ByteBuffer.allocate((int) size);
+        body.asIntBuffer().put(records[0], 0, mealCount * RECORD_INTS);
+        body.position(body.position() + 4 * RECORD_INTS * mealCount);
+        body.asIntBuffer().put(ingredientRefs[0], 0, counts[1]);
+        body.position(body.position() + 4 * counts[1]);
+        body.asLongBuffer().put(ingredientAmounts[0], 0, counts[1]);
+        body.position(body.position() + 8 * counts[1]);
+        for (int[] order : byName) {
+            body.asIntBuffer().put(order);
+            body.position(body.position() + 4 * order.length);
+        }
+        int offset = 0;
+        for (byte[] bytes : stringBytes) {
+            body.putInt(offset);
+            offset += bytes.length;
+        }
+        body.putInt(offset);
+        for (byte[] bytes : stringBytes) {
+            body.put(bytes);
+        }
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, SchemaMigrations.latestVersion())
+                .putInt(12, mealCount).putInt(16, mealCount == 0 ? 0 : mealIds[mealCount - 1])
+                .putInt(20, counts[1]).putInt(24, stringBytes.size())
+                .putLong(40, System.currentTimeMillis()).putLong(48, crc.getValue()).putLong(56, catalogVersion);
+        for (Category category : categories) {
+            header.putInt(CATEGORY_COUNTS + 4 * category.ordinal(), byName[category.ordinal()].length);
+        }
+        Path absolute = path.toAbsolutePath();
+        Path temporary = null;
+        try {
+            FileChannel created = null;
+            while (created == null) {
+                temporary = absolute.resolveSibling("." + absolute.getFileName() + "."
+                        + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+                try {
+                    created = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    temporary = null;
+                }
+            }
+            try (FileChannel channel = created) {
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, body});
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (temporary != null) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return mealCount;
+    }
+
+    // index of s in the string table, added if new
+    private static int string(String s, Map<String, Integer> stringIds, List<byte[]> stringBytes) {
+        return stringIds.computeIfAbsent(s, key -> {
+            stringBytes.add(key.getBytes(StandardCharsets.UTF_8));
+            return stringBytes.size() - 1;
+        });
+    }
+
+    public int size() {
+        return mealCount;
+    }
+
+    // highest meal_id of the catalog, 0 if empty
+    public int getMaxMealId() {
+        return maxMealId;
+    }
+
+    // catalog version of the database when the snapshot was written
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    private String string(int index) {
+        int start = buffer.getInt(stringOffsets + 4 * index);
+        byte[] bytes = new byte[buffer.getInt(stringOffsets + 4 * index + 4) - start];
+        buffer.get(strings + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int field(int record, int field) {
+        return buffer.getInt(HEADER_SIZE + 4 * (record * RECORD_INTS + field));
+    }
+
+    // record index of meal_id (records are ordered by meal_id), -1 if not in the snapshot
+    private int record(int mealId) {
+        int low = 0;
+        int high = mealCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = field(middle, 0);
+            if (id < mealId) {
+                low = middle + 1;
+            } else if (id > mealId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private Meal meal(int record) {
+        int end = record + 1 < mealCount ? field(record + 1, 3) : refCount;
+        List<String> ingredients = new ArrayList<>(end - field(record, 3));
+        List<Amount> mealAmounts = new ArrayList<>(end - field(record, 3));
+        Amount.Dimension[] dimensions = Amount.Dimension.values();
+        for (int ref = field(record, 3); ref < end; ref++) {
+            int key = buffer.getInt(refs + 4 * ref);
+            ingredients.add(string(key / IngredientTotals.DIMENSIONS));
+            mealAmounts.add(new Amount(dimensions[key % IngredientTotals.DIMENSIONS], buffer.getLong(amounts + 8 * ref)));
+        }
+        Meal meal = new Meal(Category.values()[field(record, 1)], string(field(record, 2)), ingredients, mealAmounts);
+        meal.id = field(record, 0);
+        return meal;
+    }
+
+    // meal with its ingredients, null if not in the snapshot
+    public Meal getMeal(int mealId) {
+        int record = record(mealId);
+        return record < 0 ? null : meal(record);
+    }
+
+    // same contracts as MealRepository
+
+    public boolean hasMeals(Category category) {
+        return category == null ? mealCount > 0 : categoryCounts[category.ordinal()] > 0;
+    }
+
+    public int forEachMeal(Category category, Consumer<Meal> consumer) {
+        return forEachMeal(category, 0, Integer.MAX_VALUE, consumer);
+    }
+
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) {
+        int count = 0;
+        for (int record = 0; record < mealCount && count < limit; record++) {
+            if (category == null || field(record, 1) == category.ordinal()) {
+                if (offset > 0) {
+                    offset--; // skipped records are not decoded
+                } else {
+                    consumer.accept(meal(record));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // number of meals (all categories if category is null)
+    public int countMeals(Category category) {
+        return category == null ? mealCount : categoryCounts[category.ordinal()];
+    }
+
+    // stored already sorted by name
+    public Map<String, Integer> getMealIdsByCategory(Category category) {
+        int start = categoryStarts[category.ordinal()];
+        Map<String, Integer> meals = new LinkedHashMap<>();
+        for (int i = 0; i < categoryCounts[category.ordinal()]; i++) {
+            int record = buffer.getInt(start + 4 * i);
+            meals.put(string(field(record, 2)), field(record, 0));
+        }
+        return meals;
+    }
+
+    public List<String> getIngredientsByMealId(int mealId) {
+        Meal meal = getMeal(mealId);
+        return meal == null ? new ArrayList<>() : meal.ingredients;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("snapshot of %d meals, %d strings, %d KB, written %tF %<tT", mealCount, stringCount,
+                buffer.capacity() / 1024, buffer.getLong(40));
+    }
+}
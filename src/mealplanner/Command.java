@@ -3,7 +3,16 @@ package mealplanner;
 public enum Command {
     ADD,
     SHOW,
+    SEARCH,
     PLAN,
+    REPLAN,
+    PANTRY,
+    AUTO,
+    BATCH,
     SAVE,
+    RANGE,
+    IMPORT,
+    SNAPSHOT,
+    STATS,
     EXIT
 }
\ No newline at end of file
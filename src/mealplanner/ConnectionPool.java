@@ -0,0 +1,106 @@
+package mealplanner;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool implements AutoCloseable {
+
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+    // written by close(), read by acquire() and release() without the lock
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    // get an idle connection, open a new one while the pool is not full, else wait for a release
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        PooledConnection pooled = idle.poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            if (all.size() < maxSize) {
+                pooled = new PooledConnection(this, DriverManager.getConnection(url, user, password));
+                all.add(pooled);
+                return pooled;
+            }
+        }
+        try {
+            pooled = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        if (pooled == null) {
+            throw new SQLException("No connection available after " + ACQUIRE_TIMEOUT_SECONDS + " s");
+        }
+        return pooled;
+    }
+
+    // give back connection -> broken connections are dropped so a new one can be opened
+    void release(PooledConnection pooled) {
+        Connection connection = pooled.connection();
+        boolean usable;
+        try {
+            usable = !closed && !connection.isClosed();
+            if (usable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            usable = false;
+        }
+        if (usable) {
+            idle.offer(pooled);
+        } else {
+            synchronized (this) {
+                all.remove(pooled);
+            }
+            pooled.closeQuietly();
+        }
+    }
+
+    public int size() {
+        synchronized (this) {
+            return all.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<PooledConnection> connections;
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayList<>(all);
+            all.clear();
+        }
+        idle.clear();
+        for (PooledConnection pooled : connections) {
+            pooled.closeQuietly();
+        }
+    }
+}
@@ -23,12 +23,10 @@ public class DayPlan {
     }
 
     public String toString() {
-        return String.format("""
-                %s
-                Breakfast: %s 
-                Lunch: %s 
-                Dinner: %s               
-                """, this.day, this.breakfastMeal, this.lunchMeal, this.dinnerMeal);
+        return new StringBuilder(96).append(day)
+                .append("\nBreakfast: ").append(breakfastMeal)
+                .append("\nLunch: ").append(lunchMeal)
+                .append("\nDinner: ").append(dinnerMeal).append('\n').toString();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,417 @@
+package mealplanner;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// storage without database : concurrent maps, nothing is kept after exit
+// meals keep ingredient keys & amounts as parallel arrays, shopping lists & pantries are long[] indexed by key
+// (see IngredientTotals)
+// can start from a catalog snapshot : its meals are read from the file when needed, new meals get the next ids
+public class InMemoryMealRepository implements MealRepository {
+
+    private final CatalogSnapshot base; // null if the catalog starts empty
+    private final AtomicInteger nextMealId;
+    private final AtomicLong catalogVersion; // + 1 by addMeals
+    private final IngredientDictionary dictionary = new IngredientDictionary();
+    private final ConcurrentNavigableMap<Integer, StoredMeal> meals = new ConcurrentSkipListMap<>(); // meal_id -> meal
+    // household -> meal_id by slot (slot = day * 3 + category.ordinal(), 0 if not planned)
+    private final ConcurrentMap<Integer, int[]> plans = new ConcurrentHashMap<>();
+    // household -> amount by key, needed - pantry (only > 0 is to buy)
+    private final ConcurrentMap<Integer, long[]> shoppingLists = new ConcurrentHashMap<>();
+    // household -> amount by key
+    private final ConcurrentMap<Integer, long[]> pantries = new ConcurrentHashMap<>();
+    // household -> Monday of the week -> meal_id by slot, copies of the plan made by recordWeek
+    private final ConcurrentMap<Integer, ConcurrentNavigableMap<LocalDate, int[]>> history = new ConcurrentHashMap<>();
+    // household -> lock of its plan, shopping list & pantry
+    private final ConcurrentMap<Integer, Object> locks = new ConcurrentHashMap<>();
+
+    private static class StoredMeal {
+        final int id;
+        final Category category;
+        final String name;
+        final int[] keys; // ingredient id * 3 + dimension
+        final long[] amounts; // same index as keys
+
+        StoredMeal(int id, Category category, String name, int[] keys, long[] amounts) {
+            this.id = id;
+            this.category = category;
+            this.name = name;
+            this.keys = keys;
+            this.amounts = amounts;
+        }
+    }
+
+    public InMemoryMealRepository() {
+        this(null);
+    }
+
+    public InMemoryMealRepository(CatalogSnapshot base) {
+        this.base = base;
+        this.nextMealId = new AtomicInteger(base == null ? 1 : base.getMaxMealId() + 1);
+        this.catalogVersion = new AtomicLong(base == null ? 0 : base.getCatalogVersion());
+    }
+
+    // added meal, or meal of the snapshot with its ingredients interned, null if unknown
+    private StoredMeal meal(int mealId) {
+        StoredMeal stored = meals.get(mealId);
+        if (stored != null || base == null || mealId > base.getMaxMealId()) {
+            return stored;
+        }
+        Meal meal = base.getMeal(mealId);
+        return meal == null ? null : store(mealId, meal);
+    }
+
+    private StoredMeal store(int mealId, Meal meal) {
+        int[] keys = new int[meal.ingredients.size()];
+        long[] amounts = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Amount amount = meal.getAmount(i);
+            keys[i] = IngredientTotals.key(dictionary.intern(meal.ingredients.get(i)), amount.dimension);
+            amounts[i] = amount.thousandths;
+        }
+        return new StoredMeal(mealId, meal.category, meal.name, keys, amounts);
+    }
+
+    private Meal toMeal(StoredMeal stored) {
+        Amount.Dimension[] dimensions = Amount.Dimension.values();
+        List<Amount> amounts = new ArrayList<>(stored.keys.length);
+        for (int i = 0; i < stored.keys.length; i++) {
+            amounts.add(new Amount(dimensions[stored.keys[i] % IngredientTotals.DIMENSIONS], stored.amounts[i]));
+        }
+        Meal meal = new Meal(stored.category, stored.name, getIngredients(stored), amounts);
+        meal.id = stored.id;
+        return meal;
+    }
+
+    private List<String> getIngredients(StoredMeal stored) {
+        List<String> ingredients = new ArrayList<>(stored.keys.length);
+        for (int key : stored.keys) {
+            ingredients.add(dictionary.name(key / IngredientTotals.DIMENSIONS));
+        }
+        return ingredients;
+    }
+
+    @Override
+    public int[] addMeals(List<Meal> newMeals) {
+        int[] mealIds = new int[newMeals.size()];
+        for (int i = 0; i < newMeals.size(); i++) {
+            mealIds[i] = nextMealId.getAndIncrement();
+            meals.put(mealIds[i], store(mealIds[i], newMeals.get(i)));
+        }
+        catalogVersion.incrementAndGet();
+        return mealIds;
+    }
+
+    @Override
+    public boolean hasMeals(Category category) {
+        if (base != null && base.hasMeals(category)) {
+            return true;
+        }
+        if (category == null) {
+            return !meals.isEmpty();
+        }
+        for (StoredMeal meal : meals.values()) {
+            if (meal.category == category) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int forEachMeal(Category category, Consumer<Meal> consumer) {
+        return forEachMeal(category, 0, Integer.MAX_VALUE, consumer);
+    }
+
+    @Override
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) {
+        int count = 0;
+        if (base != null) { // lower ids first
+            count = base.forEachMeal(category, offset, limit, consumer);
+            offset = Math.max(0, offset - base.countMeals(category));
+        }
+        for (StoredMeal meal : meals.values()) {
+            if (count >= limit) {
+                break;
+            }
+            if (category == null || meal.category == category) {
+                if (offset > 0) {
+                    offset--; // skipped meals are not copied
+                } else {
+                    consumer.accept(toMeal(meal));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> getMealIdsByCategory(Category category) {
+        Map<String, Integer> mealIds = new TreeMap<>();
+        for (StoredMeal meal : meals.values()) {
+            if (meal.category == category) {
+                mealIds.put(meal.name, meal.id);
+            }
+        }
+        if (base == null) {
+            return mealIds;
+        }
+        Map<String, Integer> baseMealIds = base.getMealIdsByCategory(category); // already sorted
+        if (mealIds.isEmpty()) {
+            return baseMealIds;
+        }
+        Map<String, Integer> merged = new TreeMap<>(baseMealIds);
+        merged.putAll(mealIds);
+        return merged;
+    }
+
+    @Override
+    public List<String> getIngredientsByMealId(int mealId) {
+        StoredMeal meal = meal(mealId);
+        return meal == null ? new ArrayList<>() : getIngredients(meal);
+    }
+
+    @Override
+    public int getMaxMealId() {
+        return nextMealId.get() - 1;
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    private Object lock(int householdId) {
+        return locks.computeIfAbsent(householdId, key -> new Object());
+    }
+
+    // copy with room for every ingredient id known so far
+    private long[] grown(long[] totals) {
+        int size = IngredientTotals.size(dictionary.capacity());
+        if (totals == null) {
+            return new long[size];
+        }
+        return Arrays.copyOf(totals, Math.max(size, totals.length));
+    }
+
+    private void checkMeal(int mealId) {
+        if (meal(mealId) == null) {
+            throw new IllegalArgumentException("Unknown meal_id " + mealId);
+        }
+    }
+
+    private static int slot(String day, Category category) {
+        return Arrays.asList(Main.daysOfWeek).indexOf(day) * Category.values().length + category.ordinal();
+    }
+
+    @Override
+    public void clearPlan(int householdId) {
+        synchronized (lock(householdId)) {
+            plans.remove(householdId);
+            shoppingLists.remove(householdId);
+        }
+    }
+
+    @Override
+    public void addPlan(int householdId, String day, Category category, int mealId) {
+        addPlans(householdId, new int[]{slot(day, category)}, new int[]{mealId});
+    }
+
+    @Override
+    public void addPlans(int householdId, int[] slots, int[] mealIds) {
+        for (int mealId : mealIds) {
+            checkMeal(mealId);
+        }
+        synchronized (lock(householdId)) {
+            int[] plan = plans.get(householdId);
+            int[] updated = plan == null ? new int[Main.daysOfWeek.length * Category.values().length] : plan.clone();
+            for (int i = 0; i < slots.length; i++) {
+                updated[slots[i]] = mealIds[i];
+            }
+            plans.put(householdId, updated);
+        }
+    }
+
+    @Override
+    public void savePlan(int householdId, int[] mealIds, LocalDate weekStart) {
+        for (int mealId : mealIds) {
+            checkMeal(mealId);
+        }
+        synchronized (lock(householdId)) {
+            plans.put(householdId, mealIds.clone());
+            buildShoppingList(householdId);
+            recordWeek(householdId, weekStart);
+        }
+    }
+
+    @Override
+    public boolean hasPlan(int householdId) {
+        return plans.containsKey(householdId);
+    }
+
+    @Override
+    public String[][] getWeekPlan(int householdId) {
+        int categories = Category.values().length;
+        String[][] week = new String[Main.daysOfWeek.length][categories];
+        int[] plan = plans.get(householdId);
+        if (plan != null) {
+            for (int slot = 0; slot < plan.length; slot++) {
+                StoredMeal meal = meal(plan[slot]);
+                week[slot / categories][slot % categories] = meal == null ? null : meal.name;
+            }
+        }
+        return week;
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId) {
+        checkMeal(mealId);
+        int slot = slot(day, category);
+        synchronized (lock(householdId)) {
+            int[] plan = plans.get(householdId);
+            int[] updated = plan == null ? new int[Main.daysOfWeek.length * Category.values().length] : plan.clone();
+            int previous = updated[slot];
+            if (previous == mealId) {
+                return previous;
+            }
+            updated[slot] = mealId;
+            plans.put(householdId, updated);
+            StoredMeal old = meal(previous);
+            StoredMeal meal = meal(mealId);
+            long[] totals = grown(shoppingLists.get(householdId));
+            if (old != null) {
+                IngredientTotals.add(totals, old.keys, old.amounts, -1);
+            }
+            IngredientTotals.add(totals, meal.keys, meal.amounts, 1);
+            shoppingLists.put(householdId, totals);
+            return previous;
+        }
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart) {
+        synchronized (lock(householdId)) {
+            int previous = replanSlot(householdId, day, category, mealId);
+            recordWeek(householdId, weekStart);
+            return previous;
+        }
+    }
+
+    @Override
+    public void setPantryItem(int householdId, String ingredient, Amount amount) {
+        int key = IngredientTotals.key(dictionary.intern(ingredient), amount.dimension);
+        synchronized (lock(householdId)) {
+            long[] pantry = grown(pantries.get(householdId));
+            long previous = pantry[key];
+            pantry[key] = amount.thousandths;
+            pantries.put(householdId, pantry);
+            long[] totals = grown(shoppingLists.get(householdId));
+            totals[key] += previous - amount.thousandths; // more in the pantry -> less to buy
+            shoppingLists.put(householdId, totals);
+        }
+    }
+
+    // sum the amount arrays of every planned meal into a long[] minus the pantry, then replace shopping list
+    @Override
+    public void buildShoppingList(int householdId) {
+        synchronized (lock(householdId)) {
+            long[] totals = grown(null);
+            int[] plan = plans.get(householdId);
+            if (plan != null) {
+                for (int mealId : plan) {
+                    StoredMeal meal = meal(mealId);
+                    if (meal != null) {
+                        IngredientTotals.add(totals, meal.keys, meal.amounts, 1);
+                    }
+                }
+            }
+            long[] pantry = pantries.get(householdId);
+            if (pantry != null) {
+                IngredientTotals.add(totals, pantry, -1);
+            }
+            shoppingLists.put(householdId, totals);
+        }
+    }
+
+    @Override
+    public void buildShoppingList(int householdId, LocalDate weekStart) {
+        synchronized (lock(householdId)) {
+            buildShoppingList(householdId);
+            recordWeek(householdId, weekStart);
+        }
+    }
+
+    @Override
+    public void recordWeek(int householdId, LocalDate weekStart) {
+        synchronized (lock(householdId)) {
+            int[] plan = plans.get(householdId);
+            ConcurrentNavigableMap<LocalDate, int[]> weeks = history.computeIfAbsent(householdId,
+                    key -> new ConcurrentSkipListMap<>());
+            if (plan == null) {
+                weeks.remove(weekStart);
+            } else {
+                weeks.put(weekStart, plan.clone());
+            }
+        }
+    }
+
+    // one long[] per week summed in parallel (plans are immutable copies), then merged
+    @Override
+    public void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer) {
+        ConcurrentNavigableMap<LocalDate, int[]> weeks = history.get(householdId);
+        if (weeks == null) {
+            return;
+        }
+        weeks.subMap(Utils.weekStart(first), true, last, true).entrySet().parallelStream()
+                .map(week -> weekTotals(week.getKey(), week.getValue(), first, last))
+                .reduce((a, b) -> {
+                    long[] sum = a.length >= b.length ? a : b; // ingredients may be added while summing
+                    IngredientTotals.add(sum, sum == a ? b : a, 1);
+                    return sum;
+                })
+                .ifPresent(totals -> IngredientTotals.forEachPositive(totals, dictionary, consumer));
+    }
+
+    // amounts of the meals of one week planned from first to last
+    private long[] weekTotals(LocalDate weekStart, int[] plan, LocalDate first, LocalDate last) {
+        List<StoredMeal> planned = new ArrayList<>(plan.length);
+        int categories = Category.values().length;
+        for (int slot = 0; slot < plan.length; slot++) {
+            LocalDate date = weekStart.plusDays(slot / categories);
+            StoredMeal meal = meal(plan[slot]);
+            if (meal != null && !date.isBefore(first) && !date.isAfter(last)) {
+                planned.add(meal);
+            }
+        }
+        long[] totals = grown(null); // after meal() : every key of these meals fits
+        for (StoredMeal meal : planned) {
+            IngredientTotals.add(totals, meal.keys, meal.amounts, 1);
+        }
+        return totals;
+    }
+
+    @Override
+    public void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) {
+        long[] totals = shoppingLists.get(householdId);
+        if (totals != null) {
+            IngredientTotals.forEachPositive(totals, dictionary, consumer);
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
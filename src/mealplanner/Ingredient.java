@@ -2,19 +2,26 @@ package mealplanner;
 
 public class Ingredient {
     String name;
-    int quantity;
+    Amount amount;
 
-    public Ingredient(String name, int quantity) {
+    public Ingredient(String name, Amount amount) {
         this.name = name;
-        this.quantity = quantity;
+        this.amount = amount;
+    }
+
+    // "egg" for one piece, "egg x7", "flour 1.25 kg"
+    public String text() {
+        return amount.equals(Amount.ONE_PIECE) ? name : name + " " + amount;
+    }
+
+    // text() appended to text, nothing allocated but the builder growing
+    static StringBuilder appendText(StringBuilder text, String name, Amount amount) {
+        text.append(name);
+        return amount.equals(Amount.ONE_PIECE) ? text : amount.appendTo(text.append(' '));
     }
 
     @Override
     public String toString() {
-        if (quantity > 1) {
-            return name + " x" + quantity + "\n";
-        } else {
-            return name + "\n";
-        }
+        return text() + "\n";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package mealplanner;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// ingredient name <-> int id, one String instance per name
+// ids are small & dense -> counters can be plain int[] indexed by id
+public class IngredientDictionary {
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int nextId = 0; // guarded by this
+
+    // id of name, new id if unknown (in-process ids : 0, 1, 2 ...)
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int newId = nextId;
+            put(newId, name);
+            return newId;
+        }
+    }
+
+    // register id given by the database -> shared instance of name
+    public synchronized String put(int id, String name) {
+        String[] current = names;
+        if (id < current.length && current[id] != null) {
+            return current[id];
+        }
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+        }
+        current[id] = name;
+        names = current;
+        ids.put(name, id);
+        nextId = Math.max(nextId, id + 1);
+        return name;
+    }
+
+    // id of name, -1 if unknown
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // name of id, null if unknown
+    public String name(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    // size of an int[] counter indexed by id
+    public synchronized int capacity() {
+        return nextId;
+    }
+}
@@ -0,0 +1,57 @@
+package mealplanner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// shopping list totals as a long[] indexed by key = ingredient id * 3 + dimension (thousandths of piece, g or ml)
+// ingredients of a meal are parallel primitive arrays (keys, amounts) -> the meals of a week, a month or many
+// households are summed with add() into one long[], no boxing, no map lookups
+public class IngredientTotals {
+
+    public static final int DIMENSIONS = Amount.Dimension.values().length;
+    private static final Amount.Dimension[] dimensions = Amount.Dimension.values();
+
+    private IngredientTotals() {
+    }
+
+    public static int key(int ingredientId, Amount.Dimension dimension) {
+        return ingredientId * DIMENSIONS + dimension.ordinal();
+    }
+
+    // size of a totals array for ingredient ids < ingredientCapacity
+    public static int size(int ingredientCapacity) {
+        return ingredientCapacity * DIMENSIONS;
+    }
+
+    // totals[keys[i]] += sign * amounts[i]
+    public static void add(long[] totals, int[] keys, long[] amounts, long sign) {
+        for (int i = 0; i < keys.length; i++) {
+            totals[keys[i]] += sign * amounts[i];
+        }
+    }
+
+    // totals[i] += sign * other[i]
+    public static void add(long[] totals, long[] other, long sign) {
+        for (int i = 0; i < other.length; i++) {
+            totals[i] += sign * other[i];
+        }
+    }
+
+    // items with a total > 0, sorted by ingredient name then dimension
+    public static void forEachPositive(long[] totals, IngredientDictionary dictionary, Consumer<Ingredient> consumer) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; key < totals.length; key++) {
+            if (totals[key] > 0) {
+                keys.add(key);
+            }
+        }
+        keys.sort(Comparator.<Integer, String>comparing(key -> dictionary.name(key / DIMENSIONS))
+                .thenComparing(key -> key % DIMENSIONS));
+        for (int key : keys) {
+            consumer.accept(new Ingredient(dictionary.name(key / DIMENSIONS),
+                    new Amount(dimensions[key % DIMENSIONS], totals[key])));
+        }
+    }
+}
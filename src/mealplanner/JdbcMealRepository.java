@@ -0,0 +1,676 @@
+package mealplanner;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+// PostgreSQL storage : pooled connections, prepared statements cached per connection
+public class JdbcMealRepository implements MealRepository {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final String MEALS_SELECT = "SELECT m.meal_id, m.category, m.meal, n.name_id, n.name, i.amount, i.unit FROM ";
+    private static final String MEALS_JOINS = "LEFT JOIN ingredients i ON i.meal_id = m.meal_id " +
+            "LEFT JOIN ingredient_names n ON n.name_id = i.name_id ";
+    private static final String MEALS_QUERY = MEALS_SELECT + "meals m " + MEALS_JOINS;
+    // the page of meals is selected first, then only its ingredients are joined
+    private static final String MEALS_PAGE_QUERY = MEALS_SELECT + "(SELECT meal_id, category, meal FROM meals %s" +
+            "ORDER BY meal_id LIMIT ? OFFSET ?) m " + MEALS_JOINS;
+    private static final String ORDER_BY = "ORDER BY m.meal_id, i.ingredient_id";
+    // one statement for the ingredients of all meals, rows (and ingredient_id) in array order
+    private static final String INSERT_INGREDIENTS_SQL = "INSERT INTO ingredients (name_id, meal_id, amount, unit) " +
+            "SELECT u.name_id, u.meal_id, u.amount, u.unit FROM unnest(?::integer[], ?::integer[], ?::bigint[], ?::varchar[]) " +
+            "WITH ORDINALITY AS u(name_id, meal_id, amount, unit, position) ORDER BY u.position";
+    private static final String INSERT_NAMES_SQL = "INSERT INTO ingredient_names (name) SELECT unnest(?::varchar[]) " +
+            "ON CONFLICT (name) DO NOTHING";
+    private static final String SELECT_NAMES_SQL = "SELECT name_id, name FROM ingredient_names WHERE name = ANY (?::varchar[])";
+    private static final String INSERT_PLAN_SQL = "INSERT INTO plan (household_id, plan_id, category, meal_id) VALUES (?, ?, ?, ?)";
+    // amounts of the ingredients of every planned meal - pantry, by ingredient and unit
+    private static final String AGGREGATE_SQL = "INSERT INTO shoppingList (household_id, name_id, unit, quantity) " +
+            "SELECT ?, d.name_id, d.unit, SUM(d.quantity) FROM (" +
+            "SELECT i.name_id, i.unit, SUM(i.amount) AS quantity FROM plan p JOIN ingredients i ON i.meal_id = p.meal_id " +
+            "WHERE p.household_id = ? GROUP BY i.name_id, i.unit " +
+            "UNION ALL SELECT name_id, unit, -quantity FROM pantry WHERE household_id = ?" +
+            ") d GROUP BY d.name_id, d.unit HAVING SUM(d.quantity) <> 0";
+    // add quantity by name_id & unit ((name_id, unit, quantity) rows of the select) to the shopping list
+    private static final String APPLY_DELTA_SQL = "INSERT INTO shoppingList (household_id, name_id, unit, quantity) " +
+            "SELECT ?, d.name_id, d.unit, d.quantity FROM (%s) d WHERE d.quantity <> 0 " +
+            "ON CONFLICT (household_id, name_id, unit) DO UPDATE SET quantity = shoppingList.quantity + EXCLUDED.quantity";
+    // amounts of the new meal (+) and of the old meal (-), same ingredient & unit in both cancels out
+    private static final String MEAL_DELTA_SQL = String.format(APPLY_DELTA_SQL,
+            "SELECT name_id, unit, SUM(CASE WHEN meal_id = ? THEN amount ELSE -amount END) AS quantity " +
+                    "FROM ingredients WHERE meal_id IN (?, ?) GROUP BY name_id, unit");
+    private static final String PANTRY_DELTA_SQL = String.format(APPLY_DELTA_SQL,
+            "SELECT CAST(? AS INTEGER) AS name_id, CAST(? AS VARCHAR) AS unit, CAST(? AS BIGINT) AS quantity");
+
+    // current plan of a household copied as one week of history (day = index of plan_id in Main.daysOfWeek)
+    private static final String RECORD_WEEK_SQL = "INSERT INTO plan_history (household_id, week_start, day, category, meal_id) " +
+            "SELECT household_id, ?, array_position(ARRAY['" + String.join("', '", Main.daysOfWeek) + "']::varchar[], plan_id) - 1, " +
+            "category, meal_id FROM plan WHERE household_id = ?";
+    // grouped in the database : weeks found by the primary key (household_id, week_start ...), then days within the range
+    private static final String RANGE_SQL = "SELECT n.name, t.unit, t.quantity FROM (" +
+            "SELECT i.name_id, i.unit, SUM(i.amount) AS quantity FROM plan_history h JOIN ingredients i ON i.meal_id = h.meal_id " +
+            "WHERE h.household_id = ? AND h.week_start BETWEEN ? AND ? AND h.week_start + h.day BETWEEN ? AND ? " +
+            "GROUP BY i.name_id, i.unit) t JOIN ingredient_names n ON n.name_id = t.name_id " +
+            "ORDER BY n.name, CASE t.unit WHEN 'pc' THEN 0 WHEN 'g' THEN 1 ELSE 2 END";
+
+    // first key of the transaction level advisory lock taken on a household (second key = household_id)
+    private static final int HOUSEHOLD_LOCK = 0x4D50; // "MP"
+
+    private final ConnectionPool pool;
+    // name_id <-> name already read from ingredient_names
+    private final IngredientDictionary dictionary = new IngredientDictionary();
+
+    public JdbcMealRepository(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        SchemaMigrations.migrate(pool);
+    }
+
+    @Override
+    public int[] addMeals(List<Meal> meals) throws SQLException {
+        if (meals.isEmpty()) {
+            return new int[0];
+        }
+        Map<String, Integer> nameIds = new HashMap<>();
+        int[] mealIds;
+        try (PooledConnection pooled = pool.acquire()) {
+            mealIds = pooled.inTransaction(connection -> {
+                int[] ids = insertMeals(connection, meals);
+                insertIngredients(connection, meals, ids, nameIds);
+                return ids;
+            });
+        }
+        publishNames(nameIds);
+        return mealIds;
+    }
+
+    // INSERT INTO meals ... VALUES (?, ?), (?, ?) ... RETURNING meal_id
+    private static int[] insertMeals(PooledConnection connection, List<Meal> meals) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO meals (category, meal) VALUES ");
+        for (int i = 0; i < meals.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        sql.append(" RETURNING meal_id");
+        int[] mealIds = new int[meals.size()];
+        PreparedStatement preparedStatement = connection.prepare(sql.toString());
+        int index = 1;
+        for (Meal meal : meals) {
+            preparedStatement.setString(index++, String.valueOf(meal.category));
+            preparedStatement.setString(index++, meal.name);
+        }
+        try (ResultSet resultSet = connection.executeQuery(preparedStatement)) {
+            int i = 0;
+            while (resultSet.next()) {
+                mealIds[i++] = resultSet.getInt(1);
+            }
+            if (i != mealIds.length) {
+                throw new SQLException("Expected " + mealIds.length + " meal ids, got " + i);
+            }
+        }
+        return mealIds;
+    }
+
+    private void insertIngredients(PooledConnection connection, List<Meal> meals, int[] mealIds,
+                                   Map<String, Integer> nameIds) throws SQLException {
+        Set<String> names = new HashSet<>();
+        for (Meal meal : meals) {
+            names.addAll(meal.ingredients);
+        }
+        resolveNames(connection, names, nameIds);
+        int count = 0;
+        for (Meal meal : meals) {
+            count += meal.ingredients.size();
+        }
+        if (count == 0) {
+            return;
+        }
+        Integer[] nameIdColumn = new Integer[count];
+        Integer[] mealIdColumn = new Integer[count];
+        Long[] amountColumn = new Long[count];
+        String[] unitColumn = new String[count];
+        int row = 0;
+        for (int i = 0; i < meals.size(); i++) {
+            Meal meal = meals.get(i);
+            for (int j = 0; j < meal.ingredients.size(); j++, row++) {
+                Amount amount = meal.getAmount(j);
+                nameIdColumn[row] = nameIds.get(meal.ingredients.get(j));
+                mealIdColumn[row] = mealIds[i];
+                amountColumn[row] = amount.thousandths;
+                unitColumn[row] = amount.dimension.symbol;
+            }
+        }
+        PreparedStatement preparedStatement = connection.prepare(INSERT_INGREDIENTS_SQL);
+        preparedStatement.setArray(1, connection.connection().createArrayOf("integer", nameIdColumn));
+        preparedStatement.setArray(2, connection.connection().createArrayOf("integer", mealIdColumn));
+        preparedStatement.setArray(3, connection.connection().createArrayOf("bigint", amountColumn));
+        preparedStatement.setArray(4, connection.connection().createArrayOf("varchar", unitColumn));
+        connection.executeUpdate(preparedStatement);
+    }
+
+    // name_id of every ingredient name into nameIds (2 statements for names unknown to the dictionary)
+    // ids read here are not in the dictionary yet : a name inserted by this transaction has no row if it rolls back
+    private void resolveNames(PooledConnection connection, Collection<String> ingredients, Map<String, Integer> nameIds)
+            throws SQLException {
+        Set<String> unknown = new HashSet<>();
+        for (String ingredient : ingredients) {
+            int nameId = dictionary.id(ingredient);
+            if (nameId < 0) {
+                unknown.add(ingredient);
+            } else {
+                nameIds.put(ingredient, nameId);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        Array names = connection.connection().createArrayOf("varchar", unknown.toArray());
+        PreparedStatement insertNames = connection.prepare(INSERT_NAMES_SQL);
+        insertNames.setArray(1, names);
+        connection.executeUpdate(insertNames);
+        PreparedStatement selectNames = connection.prepare(SELECT_NAMES_SQL);
+        selectNames.setArray(1, names);
+        try (ResultSet resultSet = connection.executeQuery(selectNames)) {
+            while (resultSet.next()) {
+                nameIds.put(resultSet.getString("name"), resultSet.getInt("name_id"));
+            }
+        }
+    }
+
+    // ids of resolveNames once its transaction is committed
+    private void publishNames(Map<String, Integer> nameIds) {
+        for (Map.Entry<String, Integer> entry : nameIds.entrySet()) {
+            if (dictionary.name(entry.getValue()) == null) {
+                dictionary.put(entry.getValue(), entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public boolean hasMeals(Category category) throws SQLException {
+        String query = category == null ? "SELECT EXISTS (SELECT 1 FROM meals)"
+                : "SELECT EXISTS (SELECT 1 FROM meals WHERE category = ?)";
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare(query);
+            if (category != null) {
+                statement.setString(1, String.valueOf(category));
+            }
+            try (ResultSet resultSet = pooled.executeQuery(statement)) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    // one query, rows grouped by meal_id -> each complete Meal is passed to consumer
+    @Override
+    public int forEachMeal(Category category, Consumer<Meal> consumer) throws SQLException {
+        return forEachMeal(MEALS_QUERY + (category == null ? "" : "WHERE m.category = ? ") + ORDER_BY, category, -1, -1,
+                consumer);
+    }
+
+    @Override
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) throws SQLException {
+        return forEachMeal(String.format(MEALS_PAGE_QUERY, category == null ? "" : "WHERE category = ? ") + ORDER_BY,
+                category, offset, limit, consumer);
+    }
+
+    // parameters : category if not null, then limit & offset if limit >= 0
+    private int forEachMeal(String query, Category category, int offset, int limit, Consumer<Meal> consumer)
+            throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            return pooled.inTransaction(connection -> { // cursor based fetch needs a transaction
+                PreparedStatement statement = connection.prepare(query);
+                statement.setFetchSize(FETCH_SIZE);
+                int index = 1;
+                if (category != null) {
+                    statement.setString(index++, String.valueOf(category));
+                }
+                if (limit >= 0) {
+                    statement.setInt(index++, limit);
+                    statement.setInt(index, offset);
+                }
+                int count = 0;
+                try (ResultSet resultSet = connection.executeQuery(statement)) {
+                    int currentId = -1;
+                    Meal current = null;
+                    while (resultSet.next()) {
+                        int mealId = resultSet.getInt("meal_id");
+                        if (current == null || mealId != currentId) {
+                            if (current != null) {
+                                consumer.accept(current);
+                                count++;
+                            }
+                            currentId = mealId;
+                            current = new Meal(Category.valueOf(resultSet.getString("category")),
+                                    resultSet.getString("meal"), new ArrayList<>(), new ArrayList<>());
+                            current.id = mealId;
+                        }
+                        int nameId = resultSet.getInt("name_id");
+                        if (!resultSet.wasNull()) {
+                            String name = dictionary.name(nameId);
+                            current.ingredients.add(name != null ? name : dictionary.put(nameId, resultSet.getString("name")));
+                            current.amounts.add(new Amount(Amount.Dimension.of(resultSet.getString("unit")),
+                                    resultSet.getLong("amount")));
+                        }
+                    }
+                    if (current != null) {
+                        consumer.accept(current);
+                        count++;
+                    }
+                }
+                return count;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error while fetching meals and ingredients: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getMealIdsByCategory(Category category) throws SQLException {
+        Map<String, Integer> meals = new TreeMap<>();
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement mealStatement = pooled.prepare("SELECT meal_id, meal FROM meals WHERE category = ?");
+            mealStatement.setString(1, String.valueOf(category));
+            try (ResultSet mealResultSet = pooled.executeQuery(mealStatement)) {
+                while (mealResultSet.next()) {
+                    meals.put(mealResultSet.getString("meal"), mealResultSet.getInt("meal_id"));
+                }
+            }
+        }
+        return meals;
+    }
+
+    @Override
+    public List<String> getIngredientsByMealId(int mealId) throws SQLException {
+        List<String> ingredients = new ArrayList<>();
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare("SELECT n.name_id, n.name FROM ingredients i " +
+                    "JOIN ingredient_names n ON n.name_id = i.name_id WHERE i.meal_id = ? ORDER BY i.ingredient_id");
+            statement.setInt(1, mealId);
+            try (ResultSet resultSet = pooled.executeQuery(statement)) {
+                while (resultSet.next()) {
+                    ingredients.add(dictionary.put(resultSet.getInt("name_id"), resultSet.getString("name")));
+                }
+            }
+        }
+        return ingredients;
+    }
+
+    @Override
+    public int getMaxMealId() throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare("SELECT COALESCE(MAX(meal_id), 0) FROM meals");
+            try (ResultSet resultSet = pooled.executeQuery(statement)) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    @Override
+    public long getCatalogVersion() throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare("SELECT version FROM catalog_version");
+            try (ResultSet resultSet = pooled.executeQuery(statement)) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    @Override
+    public void clearPlan(int householdId) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                deletePlan(connection, householdId);
+                return null;
+            });
+        }
+    }
+
+    // writers of the same household (plan, pantry, shopping list) run one after the other until commit / rollback,
+    // different households never wait for each other -> a concurrent PLAN & REPLAN cannot leave duplicate plan rows
+    // or a shopping list built from half of the changes
+    private static void lockHousehold(PooledConnection connection, int householdId) throws SQLException {
+        PreparedStatement statement = connection.prepare("SELECT pg_advisory_xact_lock(?, ?)");
+        statement.setInt(1, HOUSEHOLD_LOCK);
+        statement.setInt(2, householdId);
+        connection.executeQuery(statement).close();
+    }
+
+    private static void deletePlan(PooledConnection connection, int householdId) throws SQLException {
+        PreparedStatement deletePlan = connection.prepare("DELETE FROM plan WHERE household_id = ?");
+        deletePlan.setInt(1, householdId);
+        connection.executeUpdate(deletePlan);
+        deleteShoppingList(connection, householdId);
+    }
+
+    private static void deleteShoppingList(PooledConnection connection, int householdId) throws SQLException {
+        PreparedStatement deleteShoppingList = connection.prepare("DELETE FROM shoppingList WHERE household_id = ?");
+        deleteShoppingList.setInt(1, householdId);
+        connection.executeUpdate(deleteShoppingList);
+    }
+
+    @Override
+    public void addPlan(int householdId, String day, Category category, int mealId) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement preparedStatement = pooled.prepare(INSERT_PLAN_SQL);
+            preparedStatement.setInt(1, householdId);
+            preparedStatement.setString(2, day);
+            preparedStatement.setString(3, String.valueOf(category));
+            preparedStatement.setInt(4, mealId);
+            pooled.executeUpdate(preparedStatement);
+        }
+    }
+
+    // one batch of plan rows, one transaction
+    @Override
+    public void addPlans(int householdId, int[] slots, int[] mealIds) throws SQLException {
+        Category[] categories = Category.values();
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                PreparedStatement insertPlan = connection.prepare(INSERT_PLAN_SQL);
+                for (int i = 0; i < slots.length; i++) {
+                    insertPlan.setInt(1, householdId);
+                    insertPlan.setString(2, Main.daysOfWeek[slots[i] / categories.length]);
+                    insertPlan.setString(3, String.valueOf(categories[slots[i] % categories.length]));
+                    insertPlan.setInt(4, mealIds[i]);
+                    insertPlan.addBatch();
+                }
+                connection.executeBatch(insertPlan);
+                return null;
+            });
+        }
+    }
+
+    // delete + one batch of plan rows + aggregate + week of history, one transaction and one connection per household
+    @Override
+    public void savePlan(int householdId, int[] mealIds, LocalDate weekStart) throws SQLException {
+        Category[] categories = Category.values();
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                deletePlan(connection, householdId);
+                PreparedStatement insertPlan = connection.prepare(INSERT_PLAN_SQL);
+                for (int slot = 0; slot < mealIds.length; slot++) {
+                    insertPlan.setInt(1, householdId);
+                    insertPlan.setString(2, Main.daysOfWeek[slot / categories.length]);
+                    insertPlan.setString(3, String.valueOf(categories[slot % categories.length]));
+                    insertPlan.setInt(4, mealIds[slot]);
+                    insertPlan.addBatch();
+                }
+                connection.executeBatch(insertPlan);
+                aggregate(connection, householdId);
+                writeWeek(connection, householdId, weekStart);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean hasPlan(int householdId) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare("SELECT EXISTS (SELECT 1 FROM plan WHERE household_id = ?)");
+            statement.setInt(1, householdId);
+            try (ResultSet resultSet = pooled.executeQuery(statement)) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    // whole week in one query
+    @Override
+    public String[][] getWeekPlan(int householdId) throws SQLException {
+        String[][] week = new String[Main.daysOfWeek.length][Category.values().length];
+        Map<String, Integer> dayIndex = new HashMap<>();
+        for (int day = 0; day < Main.daysOfWeek.length; day++) {
+            dayIndex.put(Main.daysOfWeek[day], day);
+        }
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement planStatement = pooled.prepare("SELECT p.plan_id, p.category, m.meal FROM plan p " +
+                    "JOIN meals m ON m.meal_id = p.meal_id WHERE p.household_id = ?");
+            planStatement.setInt(1, householdId);
+            try (ResultSet planResultSet = pooled.executeQuery(planStatement)) {
+                while (planResultSet.next()) {
+                    Integer day = dayIndex.get(planResultSet.getString("plan_id"));
+                    if (day != null) {
+                        week[day][Category.valueOf(planResultSet.getString("category")).ordinal()] =
+                                planResultSet.getString("meal");
+                    }
+                }
+            }
+        }
+        return week;
+    }
+
+    // build shoppingList TABLE from plan TABLE in one statement (replace previous content)
+    @Override
+    public void buildShoppingList(int householdId) throws SQLException {
+        buildShoppingList(householdId, null);
+    }
+
+    // + week of history when weekStart is not null, same transaction
+    @Override
+    public void buildShoppingList(int householdId, LocalDate weekStart) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                deleteShoppingList(connection, householdId);
+                aggregate(connection, householdId);
+                if (weekStart != null) {
+                    writeWeek(connection, householdId, weekStart);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.out.println("Error while building the shopping list: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static void aggregate(PooledConnection connection, int householdId) throws SQLException {
+        PreparedStatement statement = connection.prepare(AGGREGATE_SQL);
+        statement.setInt(1, householdId);
+        statement.setInt(2, householdId);
+        statement.setInt(3, householdId);
+        connection.executeUpdate(statement);
+    }
+
+    // household locked -> concurrent replans apply their deltas one after the other
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId) throws SQLException {
+        return replanSlot(householdId, day, category, mealId, null);
+    }
+
+    // + week of history when weekStart is not null (also when the meal is unchanged), same transaction
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart)
+            throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            return pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                PreparedStatement select = connection.prepare("SELECT meal_id FROM plan " +
+                        "WHERE household_id = ? AND plan_id = ? AND category = ? FOR UPDATE");
+                select.setInt(1, householdId);
+                select.setString(2, day);
+                select.setString(3, String.valueOf(category));
+                int previous = 0;
+                try (ResultSet resultSet = connection.executeQuery(select)) {
+                    if (resultSet.next()) {
+                        previous = resultSet.getInt("meal_id");
+                    }
+                }
+                if (previous != mealId) {
+                    replaceSlot(connection, householdId, day, category, mealId, previous);
+                }
+                if (weekStart != null) {
+                    writeWeek(connection, householdId, weekStart);
+                }
+                return previous;
+            });
+        }
+    }
+
+    // meal of the slot replaced (inserted if previous is 0) & difference of ingredients applied to the shopping list
+    private static void replaceSlot(PooledConnection connection, int householdId, String day, Category category,
+                                    int mealId, int previous) throws SQLException {
+        PreparedStatement write = connection.prepare(previous == 0 ? INSERT_PLAN_SQL :
+                "UPDATE plan SET meal_id = ? WHERE household_id = ? AND plan_id = ? AND category = ?");
+        if (previous == 0) {
+            write.setInt(1, householdId);
+            write.setString(2, day);
+            write.setString(3, String.valueOf(category));
+            write.setInt(4, mealId);
+        } else {
+            write.setInt(1, mealId);
+            write.setInt(2, householdId);
+            write.setString(3, day);
+            write.setString(4, String.valueOf(category));
+        }
+        connection.executeUpdate(write);
+        PreparedStatement delta = connection.prepare(MEAL_DELTA_SQL);
+        delta.setInt(1, householdId);
+        delta.setInt(2, mealId);
+        delta.setInt(3, mealId);
+        delta.setInt(4, previous);
+        connection.executeUpdate(delta);
+        deleteEmptyItems(connection, householdId);
+    }
+
+    @Override
+    public void setPantryItem(int householdId, String ingredient, Amount amount) throws SQLException {
+        Map<String, Integer> nameIds = new HashMap<>();
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                resolveNames(connection, List.of(ingredient), nameIds);
+                int nameId = nameIds.get(ingredient);
+                String unit = amount.dimension.symbol;
+                PreparedStatement select = connection.prepare(
+                        "SELECT quantity FROM pantry WHERE household_id = ? AND name_id = ? AND unit = ? FOR UPDATE");
+                select.setInt(1, householdId);
+                select.setInt(2, nameId);
+                select.setString(3, unit);
+                long previous = 0;
+                try (ResultSet resultSet = connection.executeQuery(select)) {
+                    if (resultSet.next()) {
+                        previous = resultSet.getLong("quantity");
+                    }
+                }
+                if (previous == amount.thousandths) {
+                    return null;
+                }
+                PreparedStatement write = connection.prepare(amount.isZero()
+                        ? "DELETE FROM pantry WHERE household_id = ? AND name_id = ? AND unit = ?"
+                        : "INSERT INTO pantry (household_id, name_id, unit, quantity) VALUES (?, ?, ?, ?) " +
+                        "ON CONFLICT (household_id, name_id, unit) DO UPDATE SET quantity = EXCLUDED.quantity");
+                write.setInt(1, householdId);
+                write.setInt(2, nameId);
+                write.setString(3, unit);
+                if (!amount.isZero()) {
+                    write.setLong(4, amount.thousandths);
+                }
+                connection.executeUpdate(write);
+                PreparedStatement delta = connection.prepare(PANTRY_DELTA_SQL);
+                delta.setInt(1, householdId);
+                delta.setInt(2, nameId);
+                delta.setString(3, unit);
+                delta.setLong(4, previous - amount.thousandths); // more in the pantry -> less to buy
+                connection.executeUpdate(delta);
+                deleteEmptyItems(connection, householdId);
+                return null;
+            });
+        }
+        publishNames(nameIds);
+    }
+
+    private static void deleteEmptyItems(PooledConnection connection, int householdId) throws SQLException {
+        PreparedStatement statement = connection.prepare(
+                "DELETE FROM shoppingList WHERE household_id = ? AND quantity = 0");
+        statement.setInt(1, householdId);
+        connection.executeUpdate(statement);
+    }
+
+    @Override
+    public void recordWeek(int householdId, LocalDate weekStart) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                lockHousehold(connection, householdId);
+                writeWeek(connection, householdId, weekStart);
+                return null;
+            });
+        }
+    }
+
+    // replace the week of history with the plan as seen by this transaction (household locked by the caller)
+    private static void writeWeek(PooledConnection connection, int householdId, LocalDate weekStart) throws SQLException {
+        PreparedStatement delete = connection.prepare(
+                "DELETE FROM plan_history WHERE household_id = ? AND week_start = ?");
+        delete.setInt(1, householdId);
+        delete.setObject(2, weekStart);
+        connection.executeUpdate(delete);
+        PreparedStatement insert = connection.prepare(RECORD_WEEK_SQL);
+        insert.setObject(1, weekStart);
+        insert.setInt(2, householdId);
+        connection.executeUpdate(insert);
+    }
+
+    @Override
+    public void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer)
+            throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                PreparedStatement statement = connection.prepare(RANGE_SQL);
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setInt(1, householdId);
+                statement.setObject(2, Utils.weekStart(first));
+                statement.setObject(3, last);
+                statement.setObject(4, first);
+                statement.setObject(5, last);
+                try (ResultSet resultSet = connection.executeQuery(statement)) {
+                    while (resultSet.next()) {
+                        consumer.accept(new Ingredient(resultSet.getString("name"),
+                                new Amount(Amount.Dimension.of(resultSet.getString("unit")), resultSet.getLong("quantity"))));
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    // forward only cursor (fetch size) -> large shopping lists are not loaded at once
+    @Override
+    public void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            pooled.inTransaction(connection -> {
+                PreparedStatement statement = connection.prepare("SELECT n.name, s.unit, s.quantity FROM shoppingList s " +
+                        "JOIN ingredient_names n ON n.name_id = s.name_id WHERE s.household_id = ? AND s.quantity > 0 " +
+                        "ORDER BY n.name, CASE s.unit WHEN 'pc' THEN 0 WHEN 'g' THEN 1 ELSE 2 END");
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setInt(1, householdId);
+                try (ResultSet resultSet = connection.executeQuery(statement)) {
+                    while (resultSet.next()) {
+                        consumer.accept(new Ingredient(resultSet.getString("name"),
+                                new Amount(Amount.Dimension.of(resultSet.getString("unit")), resultSet.getLong("quantity"))));
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
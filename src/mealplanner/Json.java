@@ -0,0 +1,149 @@
+package mealplanner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// minimal JSON for IMPORT lines, server requests & exports : one flat object with string and string array values
+public class Json {
+
+    private Json() {
+    }
+
+    // {"key": "value", "list": ["a", "b"]} -> key -> String or List<String>, in document order
+    // throws IllegalArgumentException if text is not such an object
+    public static Map<String, Object> parseObject(String text) {
+        return new Parser(text).parseObject();
+    }
+
+    // "value" with quotes, backslashes & control characters escaped
+    public static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    String key = readString();
+                    expect(':');
+                    if (object.put(key, peek() == '[' ? readStringArray() : readString()) != null) {
+                        throw new IllegalArgumentException("Duplicate key " + key);
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw new IllegalArgumentException("Trailing characters");
+            }
+            return object;
+        }
+
+        private List<String> readStringArray() {
+            List<String> values = new ArrayList<>();
+            expect('[');
+            if (peek() == ']') {
+                pos++;
+                return values;
+            }
+            do {
+                values.add(readString());
+            } while (consume(','));
+            expect(']');
+            return values;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("Bad unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Bad escape");
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("Expected " + c);
+            }
+        }
+    }
+}
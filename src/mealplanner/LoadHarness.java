@@ -0,0 +1,256 @@
+package mealplanner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Scanner;
+
+// end-to-end load test : synthetic catalog (CatalogGenerator), then rounds of SHOW, PLAN & SAVE replayed through the
+// command loop of Main (same code as --script), latency percentiles per command
+// offline : in-memory repository by default (behind the catalog cache, as with Main --in-memory), --database uses the
+// PostgreSQL of the mealplanner.db.* settings (meals are added to it and the plan of the interactive household is
+// replaced -> use a database of its own), gradle loadTestJdbc the same repository on a throwaway embedded PostgreSQL
+// exit status 1 if a --max-p99 limit is exceeded -> can gate performance changes
+//
+// gradle loadTest -PloadTest.args="--meals 100000 --rounds 50 --max-p99 PLAN=200,SAVE=50"
+// gradle loadTestJdbc -PloadTest.args="--meals 100000 --rounds 50"
+public class LoadHarness {
+
+    private static final String SAVE_FILE = "loadtest-shopping-list.txt";
+    private static final int SAMPLED_MEALS = 1000; // meal names by category the plans are drawn from
+
+    private int meals = 10_000;
+    private int ingredients = -1; // -1 : meals / 20, from 500 to 200 000
+    private double zipf = 1.0;
+    private long seed = 42;
+    private int rounds = 30;
+    private int warmup = 5;
+    private boolean database = false;
+    private ConnectionPool pool; // --database on this pool instead of the settings, null : settings
+    private final List<Command> mix = new ArrayList<>(List.of(Command.SHOW, Command.PLAN, Command.SAVE));
+    private final Map<Command, Double> maxP99Millis = new EnumMap<>(Command.class);
+
+    public static void main(String[] args) {
+        System.exit(run(args, null));
+    }
+
+    // exit status of a run, on pool when not null (as with --database), 2 : wrong arguments
+    static int run(String[] args, ConnectionPool pool) {
+        LoadHarness harness = new LoadHarness();
+        try {
+            harness.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: [--database] [--meals N] [--ingredients N] [--zipf S] [--seed N] [--rounds N] " +
+                    "[--warmup N] [--mix SHOW,PLAN,SAVE] [--max-p99 PLAN=ms,SAVE=ms]");
+            return 2;
+        }
+        harness.pool = pool;
+        harness.database |= pool != null;
+        return harness.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--database")) {
+                database = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--meals" -> meals = Integer.parseInt(value);
+                    case "--ingredients" -> ingredients = Integer.parseInt(value);
+                    case "--zipf" -> zipf = Double.parseDouble(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--rounds" -> rounds = Integer.parseInt(value);
+                    case "--warmup" -> warmup = Integer.parseInt(value);
+                    case "--mix" -> {
+                        mix.clear();
+                        for (String command : value.split(",")) {
+                            mix.add(Command.valueOf(command.trim().toUpperCase(Locale.ROOT)));
+                        }
+                    }
+                    case "--max-p99" -> {
+                        for (String limit : value.split(",")) {
+                            String[] parts = limit.split("=");
+                            if (parts.length != 2) {
+                                throw new IllegalArgumentException("Wrong limit " + limit + ", use COMMAND=ms");
+                            }
+                            maxP99Millis.put(Command.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)),
+                                    Double.parseDouble(parts[1]));
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Wrong number for " + option + ": " + value);
+            }
+        }
+        for (Command command : mix) {
+            if (command != Command.SHOW && command != Command.PLAN && command != Command.SAVE) {
+                throw new IllegalArgumentException("Only SHOW, PLAN and SAVE can be replayed");
+            }
+        }
+        if (ingredients < 0) {
+            ingredients = Math.max(500, Math.min(200_000, meals / 20));
+        }
+    }
+
+    // 0 : every p99 within its limit, 1 : a limit is exceeded or a command failed
+    private int run() {
+        boolean writeBehind = Boolean.parseBoolean(Utils.getSetting("write.behind", "true"));
+        try (MealRepository repository = !database ? new CachingMealRepository(new InMemoryMealRepository())
+                : pool == null ? Main.openDatabase(null, writeBehind) : Main.openDatabase(pool, null, writeBehind)) {
+            if (meals > 0) {
+                generate(repository);
+            }
+            String[][] names = sampleMeals(repository);
+            Map<Command, LatencyHistogram> latencies = replay(repository, names);
+            return report(latencies);
+        } catch (SQLException e) {
+            System.out.println("PostgreSQL connection failure: " + e.getMessage());
+            return 1;
+        } finally {
+            try {
+                Files.deleteIfExists(Path.of(SAVE_FILE));
+            } catch (IOException ignored) {
+                // left behind, harmless
+            }
+        }
+    }
+
+    private void generate(MealRepository repository) throws SQLException {
+        long start = System.nanoTime();
+        int first = repository.getMaxMealId(); // numbers after the meals already there -> names stay unique
+        long rows = new CatalogGenerator(ingredients, zipf, seed).generate(repository, first, meals, System.out);
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("Generated %d meals (%d ingredient rows, %d ingredients, zipf %.2f) in %.1f s, %.0f rows/s.%n",
+                meals, rows, ingredients, zipf, seconds, rows / seconds);
+    }
+
+    // up to SAMPLED_MEALS names of each category, spread over the whole catalog
+    private String[][] sampleMeals(MealRepository repository) throws SQLException {
+        Category[] categories = Category.values();
+        String[][] names = new String[categories.length][];
+        for (Category category : categories) {
+            Map<String, Integer> all = repository.getMealIdsByCategory(category);
+            if (all.isEmpty()) {
+                throw new SQLException("No " + category.toString().toLowerCase() + " in the catalog, use --meals N");
+            }
+            int step = Math.max(1, all.size() / SAMPLED_MEALS);
+            List<String> sample = new ArrayList<>();
+            int index = 0;
+            for (String name : all.keySet()) {
+                if (index++ % step == 0 && sample.size() < SAMPLED_MEALS) {
+                    sample.add(name);
+                }
+            }
+            names[category.ordinal()] = sample.toArray(new String[0]);
+        }
+        return names;
+    }
+
+    // warmup rounds are run but not measured, output of the commands is discarded
+    private Map<Command, LatencyHistogram> replay(MealRepository repository, String[][] names) {
+        Map<Command, LatencyHistogram> latencies = new LinkedHashMap<>();
+        for (Command command : mix) {
+            latencies.put(command, new LatencyHistogram());
+        }
+        Random random = new Random(seed);
+        PrintStream out = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        int failures = 0;
+        for (int round = 0; round < warmup + rounds; round++) {
+            for (Command command : mix) {
+                String script = script(command, round, names, random);
+                System.setOut(discard);
+                long start = System.nanoTime();
+                try {
+                    Main.runScript(new Scanner(script), repository);
+                } catch (RuntimeException e) { // NoSuchElementException : the command asked again (wrong answer)
+                    failures++;
+                    if (failures == 1) {
+                        out.printf("%s failed: %s%n", command, e instanceof NoSuchElementException
+                                ? "the command did not accept the replayed answers" : e.getMessage());
+                    }
+                    continue;
+                } finally {
+                    System.setOut(out);
+                }
+                if (round >= warmup) {
+                    latencies.get(command).record(System.nanoTime() - start);
+                }
+            }
+        }
+        if (failures > 0) {
+            out.printf("%d commands failed.%n", failures);
+            latencies.clear();
+        }
+        return latencies;
+    }
+
+    // command & answers as typed at the prompts
+    private static String script(Command command, int round, String[][] names, Random random) {
+        StringBuilder script = new StringBuilder(command.name().toLowerCase()).append('\n');
+        switch (command) {
+            case SHOW -> script.append(Category.values()[round % Category.values().length].toString().toLowerCase())
+                    .append('\n');
+            case PLAN -> {
+                for (int day = 0; day < Main.daysOfWeek.length; day++) {
+                    for (String[] category : names) {
+                        script.append(category[random.nextInt(category.length)]).append('\n');
+                    }
+                }
+            }
+            case SAVE -> script.append(SAVE_FILE).append('\n');
+            default -> throw new IllegalArgumentException(command + " is not replayed");
+        }
+        return script.toString();
+    }
+
+    private int report(Map<Command, LatencyHistogram> latencies) {
+        if (latencies.isEmpty()) {
+            return 1;
+        }
+        System.out.printf("%-8s %8s %9s %9s %9s %9s %9s %10s%n", "Command", "count", "mean ms", "p50 ms", "p95 ms",
+                "p99 ms", "max ms", "limit ms");
+        int status = 0;
+        for (Map.Entry<Command, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Double limit = maxP99Millis.get(entry.getKey());
+            double p99 = histogram.percentile(99) / 1e6;
+            System.out.printf("%-8s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %10s%n", entry.getKey(), histogram.getCount(),
+                    histogram.getMeanNanos() / 1e6, histogram.percentile(50) / 1e6, histogram.percentile(95) / 1e6,
+                    p99, histogram.getMaxNanos() / 1e6, limit == null ? "-" : String.format("%.2f", limit));
+            if (limit != null && p99 > limit) {
+                status = 1;
+            }
+        }
+        for (Map.Entry<Command, Double> limit : maxP99Millis.entrySet()) {
+            LatencyHistogram histogram = latencies.get(limit.getKey());
+            if (histogram == null) {
+                System.out.printf("No %s in the mix, its limit is not checked.%n", limit.getKey());
+            } else if (histogram.percentile(99) / 1e6 > limit.getValue()) {
+                System.out.printf("p99 of %s is %.2f ms, above the limit of %.2f ms.%n", limit.getKey(),
+                        histogram.percentile(99) / 1e6, limit.getValue());
+            }
+        }
+        return status;
+    }
+}
@@ -1,415 +1,660 @@
 package mealplanner;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.sql.*;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 
 public class Main {
 
     public static final String[] daysOfWeek = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+    public static final int HOUSEHOLD_ID = 0; // household of the interactive session
+    private static final WeekView weekView = new WeekView(HOUSEHOLD_ID);
+    private static MealIndex mealIndex; // SEARCH, built by the first search
     private static boolean isScannerClosed = false;
+    private static boolean scriptMode = false; // --script file : commands & answers from file, no prompts
 
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        final String DB_URL = "jdbc:postgresql://localhost:5432/meals_db";
-        final String USER = "postgres";
-        final String PASS = "1111";
-
-        try (Connection connection = DriverManager.getConnection(DB_URL, USER, PASS)) {
-            if (connection != null) {
-                Statement statement = connection.createStatement();
-                statement.executeUpdate("CREATE TABLE IF NOT EXISTS meals (" +           // TABLE meals
-                        "meal_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +       // meal_id PRIMARY KEY
-                        "category VARCHAR(10) NOT NULL," +                                  // category
-                        "meal VARCHAR(255) NOT NULL" +                                      // meal(name)
-                        ")");
-
-                statement.executeUpdate("CREATE TABLE IF NOT EXISTS ingredients (" +     // TABLE ingredients
-                        "ingredient_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY," + // ingredient_id PRIMARY KEY
-                        "ingredient VARCHAR(255) NOT NULL," +                               // ingredient(name)
-                        "meal_id INTEGER NOT NULL REFERENCES meals(meal_id)" +              // meal_id FOREIGN KEY (TABLE meals)
-                        ")");
-
-                statement.executeUpdate("CREATE TABLE IF NOT EXISTS plan (" +            // TABLE plan
-                        "plan_id VARCHAR(10)," +                                            // plan_id
-                        "category VARCHAR(10) NOT NULL," +                                  // category
-                        "meal_id INTEGER NOT NULL REFERENCES meals(meal_id)" +              // meal_id FOREIGN KEY (TABLE meals)
-                        ")");
-
-                statement.executeUpdate("CREATE TABLE IF NOT EXISTS shoppingList (" +    // TABLE shoppingList
-                        "ingredient VARCHAR(255) PRIMARY KEY," +                            // ingredient(name)
-                        "quantity INT" +                                                    // quantity
-                        ")");
-
-                start(scanner, connection);
-            } else {
-                System.out.println("Failed to make connection!");
+        List<String> options = Arrays.asList(args);
+        boolean inMemory = options.contains("--in-memory");
+        int scriptIndex = options.indexOf("--script");
+        int snapshotIndex = options.indexOf("--snapshot");
+        int serverIndex = options.indexOf("--server");
+        CatalogSnapshot snapshot = null;
+        if (snapshotIndex >= 0 && snapshotIndex + 1 < args.length) {
+            snapshot = openSnapshot(args[snapshotIndex + 1]);
+        }
+        if (serverIndex >= 0) {
+            boolean portGiven = serverIndex + 1 < args.length && args[serverIndex + 1].matches("\\d+");
+            runServer(Integer.parseInt(portGiven ? args[serverIndex + 1] : Utils.getSetting("server.port", "8080")),
+                    inMemory, snapshot);
+            return;
+        }
+        Scanner scanner;
+        if (scriptIndex < 0) {
+            scanner = new Scanner(System.in);
+        } else if (scriptIndex + 1 < args.length) {
+            try {
+                scanner = new Scanner(Files.newBufferedReader(Path.of(args[scriptIndex + 1]), StandardCharsets.UTF_8));
+            } catch (IOException | InvalidPathException e) {
+                System.out.println("Unable to read the script: " + e.getMessage());
+                return;
+            }
+            scriptMode = true;
+        } else {
+            System.out.println("Usage: --script <file> [--in-memory] [--snapshot <file>] | --server [port]");
+            return;
+        }
+
+        try (MealRepository repository = inMemory ? new CachingMealRepository(new InMemoryMealRepository(snapshot))
+                : openDatabase(snapshot, Boolean.parseBoolean(Utils.getSetting("write.behind", "true")))) {
+            long start = System.nanoTime();
+            int commands = start(scanner, repository);
+            if (scriptMode) {
+                double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 1e-9);
+                System.err.printf("Ran %d commands in %.2f s, %.0f commands/s.%n", commands, seconds, commands / seconds);
             }
         } catch (SQLException e) {
             System.out.println("PostgreSQL connection failure.");
             e.printStackTrace();
+        } catch (NoSuchElementException e) {
+            System.out.println("Input ended in the middle of a command.");
         }
     }
 
-    //command EXIT : exit, close scanner & close connection
-    private static void exit(Scanner scanner, Connection connection) {
-        System.out.println("Bye!");
-        scanner.close();
-        isScannerClosed = true;
+    // prompt : not printed in script mode (answers come from the script)
+    private static void prompt(String text) {
+        if (!scriptMode) {
+            System.out.println(text);
+        }
+    }
+
+    // --snapshot file : catalog mapped from a file written by command SNAPSHOT, null if it cannot be used
+    private static CatalogSnapshot openSnapshot(String fileName) {
+        long start = System.nanoTime();
         try {
-            connection.close();
+            CatalogSnapshot snapshot = CatalogSnapshot.open(Path.of(fileName));
+            System.err.printf("Opened %s in %.1f ms.%n", snapshot, (System.nanoTime() - start) / 1_000_000.0);
+            return snapshot;
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Unable to use the snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // --server [port] : JSON endpoints instead of commands (see PlanServer) until the process is stopped (Ctrl+C)
+    private static void runServer(int port, boolean inMemory, CatalogSnapshot snapshot) {
+        try (MealRepository repository = inMemory
+                ? new CachingMealRepository(new InMemoryMealRepository(snapshot))
+                : openDatabase(snapshot, false)) {
+            PlanServer server = new PlanServer(repository, port, Integer.parseInt(Utils.getSetting("server.threads", "64")));
+            CountDownLatch stopped = new CountDownLatch(1);
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(2);
+                stopped.countDown();
+                try {
+                    mainThread.join(10_000); // repository closed before the JVM exits
+                } catch (InterruptedException ignored) {
+                    // exiting anyway
+                }
+            }));
+            server.start();
+            System.out.printf("Listening on http://localhost:%d/ (Ctrl+C to stop).%n", server.getPort());
+            stopped.await();
+            System.out.println("Bye!");
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            System.out.println("PostgreSQL connection failure.");
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Unable to start the server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    // start : select command
-    private static void start(Scanner scanner, Connection connection){
-        Command command;
-        while (true) {
-            if (isScannerClosed) {
-                return;
+    // pooled PostgreSQL repository behind the catalog cache, settings from -Dmealplanner.db.url=... or MEALPLANNER_DB_URL=...
+    // catalog read from the snapshot (if any) when it has the catalog version of the database, checked once here
+    // writeBehind : PLAN answers saved in the background (-Dmealplanner.write.behind=false saves each one before the next prompt)
+    static MealRepository openDatabase(CatalogSnapshot snapshot, boolean writeBehind) throws SQLException {
+        return openDatabase(new ConnectionPool(
+                Utils.getSetting("db.url", "jdbc:postgresql://localhost:5432/meals_db"),
+                Utils.getSetting("db.user", "postgres"),
+                Utils.getSetting("db.password", "1111"),
+                Integer.parseInt(Utils.getSetting("db.pool.size", "4"))), snapshot, writeBehind);
+    }
+
+    // same repository on pool, closed with it (or right away if the repository cannot be opened)
+    static MealRepository openDatabase(ConnectionPool pool, CatalogSnapshot snapshot, boolean writeBehind)
+            throws SQLException {
+        try {
+            MealRepository catalog = new JdbcMealRepository(pool);
+            if (snapshot != null) {
+                SnapshotMealRepository snapshotRepository = new SnapshotMealRepository(snapshot, catalog);
+                if (snapshotRepository.isCurrent()) {
+                    catalog = snapshotRepository;
+                } else {
+                    System.out.println("The snapshot does not match the database. Reading meals from the database.");
+                }
+            }
+            MealRepository repository = new CachingMealRepository(catalog);
+            return writeBehind ? new WriteBehindMealRepository(repository) : repository;
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+    }
+
+    //command EXIT : exit & close scanner (repository is closed by main)
+    private static void exit(Scanner scanner) {
+        System.out.println("Bye!");
+        scanner.close();
+        isScannerClosed = true;
+    }
+
+    // run commands & answers without prompts like --script (LoadHarness) -> number of commands run
+    static int runScript(Scanner scanner, MealRepository repository) {
+        scriptMode = true;
+        return start(scanner, repository);
+    }
+
+    // start : read & run commands until EXIT or end of input -> number of commands run
+    private static int start(Scanner scanner, MealRepository repository) {
+        int commands = 0;
+        while (!isScannerClosed) {
+            prompt("What would you like to do (add, show, search, plan, replan, pantry, auto, batch, save, range, import, snapshot, stats, exit)?");
+            if (!scanner.hasNextLine()) {
+                break; // end of script
             }
-            System.out.println("What would you like to do (add, show, plan, save, exit)?");
             String input = scanner.nextLine().toUpperCase();
-            if (Utils.isValidEnumValue(Command.class, input)) {
-                try {
-                    command = Command.valueOf(input);
-                    switch (command) {
-                        case ADD -> addMeal(scanner, connection); // add meal by category
-                        case SHOW -> showMeals(scanner, connection); // show meals by category
-                        case PLAN -> makePlan(scanner, connection); // create plan for a week (one day = 3 categories) and create a shopping list
-                        case SAVE -> saveShoppingList(scanner, connection);
-                        case EXIT -> { // stop app.
-                            exit(scanner, connection);
-                            return;
-                        }
-                    }
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
+            if (!Utils.isValidEnumValue(Command.class, input)) {
+                continue;
+            }
+            Command command = Command.valueOf(input);
+            long start = System.nanoTime();
+            try {
+                switch (command) {
+                    case ADD -> addMeal(scanner, repository); // add meal by category
+                    case SHOW -> showMeals(scanner, repository); // show meals by category
+                    case SEARCH -> searchMeals(scanner, repository); // find meals by ingredients & name prefix
+                    case PLAN -> makePlan(scanner, repository); // create plan for a week (one day = 3 categories) and create a shopping list
+                    case REPLAN -> replanMeal(scanner, repository); // change one meal of the plan
+                    case PANTRY -> updatePantry(scanner, repository); // ingredients at home are not bought
+                    case AUTO -> makeAutoPlan(scanner, repository); // create plan for a week without choosing meals
+                    case BATCH -> makeBatchPlans(scanner, repository); // create plans for many households
+                    case SAVE -> saveShoppingList(scanner, repository);
+                    case RANGE -> rangeShoppingList(scanner, repository); // shopping list of the plan history between two dates
+                    case IMPORT -> importMeals(scanner, repository); // add meals from a CSV or JSON lines file
+                    case SNAPSHOT -> saveSnapshot(scanner, repository); // write the catalog to a file for --snapshot
+                    case STATS -> Metrics.print(System.out); // latency of commands & statements, cache counters
+                    case EXIT -> exit(scanner); // stop app.
                 }
-            } else {
-                start(scanner, connection);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            if (Metrics.ENABLED) {
+                Metrics.timer("Command", command.name()).record(System.nanoTime() - start);
             }
+            commands++;
         }
+        return commands;
     }
 
     // command ADD : add meal (category, name(meal)) in meals TABLE
-    private static void addMeal(Scanner scanner, Connection connection) throws SQLException {
-        Meal meal = new Meal(getCategory(scanner),
+    private static void addMeal(Scanner scanner, MealRepository repository) throws SQLException {
+        Meal meal = Meal.of(getCategory(scanner),
                 getName(scanner),
                 getIngredients(scanner)); // create new Meal
-        String insertMealSQL = "INSERT INTO meals (category, meal) VALUES (?, ?) RETURNING meal_id";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(insertMealSQL)) {
-            preparedStatement.setString(1, String.valueOf(meal.category));
-            preparedStatement.setString(2, meal.name);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    int mealId = resultSet.getInt(1);
-                    addIngredients(meal, mealId, connection);
-                }
-            }
-            System.out.println("The meal has been added!");
-            start(scanner, connection);
+        meal.id = repository.addMeals(List.of(meal))[0]; // meal & ingredients in one transaction
+        if (mealIndex != null) {
+            mealIndex.add(meal);
         }
+        System.out.println("The meal has been added!");
     }
 
-    // command SHOW : get meals in meals TABLE & get ingredients by meal_id in ingredients TABLE
-    private static void showMeals(Scanner scanner, Connection connection) throws SQLException {
-        List<Meal> meals = getMealsWithIngredients(connection, null);
-        if (meals.isEmpty()) {
-            System.out.println("No meals saved. Add a meal first.");
-        } else {
-            System.out.println("Which category do you want to print (breakfast, lunch, dinner)?"); // select category to display meals by category
-            selectCategory(scanner, connection);
+    // command IMPORT : bulk insert meals from a file
+    private static void importMeals(Scanner scanner, MealRepository repository) {
+        prompt("Input a filename:");
+        String fileName = scanner.nextLine();
+        try {
+            MealImporter.importFile(repository, Path.of(fileName), mealIndex);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("An error occurred while importing meals: " + e.getMessage());
         }
-        start(scanner, connection);
     }
 
-    // command PLAN : make plan day by day, category by category
-    private static void makePlan(Scanner scanner, Connection connection) throws SQLException {
-        clearTables(connection);
-        Category[] categories = Category.values();
-        Map<Category, Map<String, Integer>> mealsByCategory = getMealsByCategory(connection);
-        for (String day : daysOfWeek) {
-            planMealsForDay(scanner, connection, categories, mealsByCategory, day);
+    // command SNAPSHOT : write meals, categories & ingredients to a file, start with --snapshot file to read them from it
+    private static void saveSnapshot(Scanner scanner, MealRepository repository) throws SQLException {
+        prompt("Input a filename:");
+        String fileName = scanner.nextLine();
+        try {
+            int meals = CatalogSnapshot.write(repository, Path.of(fileName));
+            System.out.printf("Saved a snapshot of %d meals.%n", meals);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("An error occurred while saving the snapshot: " + e.getMessage());
         }
-        displayPlanDay(connection); // get read and display plan
-        start(scanner, connection);
     }
 
-    // clear TABLE plan && ingredients when plan process start
-    private static void clearTables(Connection connection) {
-        Utils.clearTableIfNotEmpty(connection, "plan");
-        Utils.clearTableIfNotEmpty(connection, "shoppingList");
+    // command SEARCH : "chicken, -nuts, name:cu" -> meals with chicken, without nuts, a name word starting with cu
+    private static void searchMeals(Scanner scanner, MealRepository repository) throws SQLException {
+        prompt("Input the ingredients to include, -ingredient to exclude, name:prefix (comma separated):");
+        MealIndex.Query query = MealIndex.Query.parse(scanner.nextLine());
+        if (query.isEmpty()) {
+            System.out.println("Nothing to search.");
+            return;
+        }
+        int limit = Integer.parseInt(Utils.getSetting("search.limit", "20"));
+        if (mealIndex == null) {
+            mealIndex = MealIndex.build(repository); // one pass over the catalog, then kept up to date by ADD & IMPORT
+        }
+        long start = System.nanoTime();
+        MealIndex.Result result = mealIndex.search(query, limit);
+        System.out.printf("Found %d meals in %.3f ms.%n", result.count, (System.nanoTime() - start) / 1_000_000.0);
+        for (int i = 0; i < result.mealIds.length; i++) {
+            System.out.printf("%s (%s)%n", result.names[i], result.categories[i].toString().toLowerCase());
+        }
+        if (result.count > result.mealIds.length) {
+            System.out.printf("... and %d more.%n", result.count - result.mealIds.length);
+        }
     }
 
-    // get meals by category
-    private static Map<Category, Map<String, Integer>> getMealsByCategory(Connection connection) throws SQLException {
-        Map<Category, Map<String, Integer>> mealsByCategory = new HashMap<>();
-        mealsByCategory.put(Category.BREAKFAST, getMealIdAndMealByCategory(connection, Category.BREAKFAST));
-        mealsByCategory.put(Category.LUNCH, getMealIdAndMealByCategory(connection, Category.LUNCH));
-        mealsByCategory.put(Category.DINNER, getMealIdAndMealByCategory(connection, Category.DINNER));
-        return mealsByCategory;
+    // command SHOW : get meals in meals TABLE & get ingredients by meal_id in ingredients TABLE
+    private static void showMeals(Scanner scanner, MealRepository repository) throws SQLException {
+        if (!repository.hasMeals(null)) {
+            System.out.println("No meals saved. Add a meal first.");
+        } else {
+            prompt("Which category do you want to print (breakfast, lunch, dinner)?"); // select category to display meals by category
+            selectCategory(scanner, repository);
+        }
     }
 
-    // make plan by day
-    private static void planMealsForDay(Scanner scanner, Connection connection, Category[] categories,
-                                        Map<Category, Map<String, Integer>> mealsByCategory, String day) throws SQLException {
-        System.out.println(day);
-        for (Category cat : categories) {
-            displayMeals(mealsByCategory.get(cat));
-            int mealId = chooseMeal(scanner, mealsByCategory.get(cat), cat, day);
-            addPlan(connection, day, cat, mealId);
+    // command PLAN : make plan day by day, category by category
+    private static void makePlan(Scanner scanner, MealRepository repository) throws SQLException {
+        repository.clearPlan(HOUSEHOLD_ID);
+        weekView.clear();
+        Category[] categories = Category.values();
+        Map<Category, Map<String, Integer>> mealsByCategory = getMealsByCategory(repository);
+        for (int day = 0; day < daysOfWeek.length; day++) {
+            planMealsForDay(scanner, repository, categories, mealsByCategory, day);
         }
-        System.out.printf("Yeah! We planned the meals for %s.%n%n", day);
+        if (!flushPlan(repository)) { // every answer saved before the plan is aggregated & displayed
+            return;
+        }
+        // aggregate ingredients of the whole plan in shoppingList TABLE & record the week, one transaction
+        repository.buildShoppingList(HOUSEHOLD_ID, currentWeek());
+        weekView.display(repository); // display plan
     }
 
-    // display meals
-    private static void displayMeals(Map<String, Integer> meals) {
-        for (Map.Entry<String, Integer> entry : meals.entrySet()) {
-            System.out.println(entry.getKey());
+    // command REPLAN : change the meal of one day & category, shopping list updated by difference only
+    private static void replanMeal(Scanner scanner, MealRepository repository) throws SQLException {
+        if (!repository.hasPlan(HOUSEHOLD_ID)) {
+            System.out.println("Unable to replan. Plan your meals first.");
+            return;
         }
+        int day = getDay(scanner);
+        Category category = getCategory(scanner, "Which meal do you want to change (breakfast, lunch, dinner)?");
+        Map<String, Integer> meals = repository.getMealIdsByCategory(category);
+        if (meals.isEmpty()) {
+            System.out.println("No meals saved. Add a meal first.");
+            return;
+        }
+        displayMeals(meals);
+        String meal = chooseMeal(scanner, meals, category, daysOfWeek[day]);
+        repository.replanSlot(HOUSEHOLD_ID, daysOfWeek[day], category, meals.get(meal), currentWeek());
+        weekView.set(day, category, meal);
+        System.out.printf("Yeah! We replanned the %s for %s.%n%n", category.toString().toLowerCase(), daysOfWeek[day]);
+        weekView.display(repository);
     }
 
-    // choose meal
-    private static int chooseMeal(Scanner scanner, Map<String, Integer> meals, Category category, String day) {
-        while (true) {
-            String str = category.toString().toLowerCase();
-            System.out.printf("Choose the %s for %s from the list above:%n", str, day);
-            String choice = scanner.nextLine();
-            if (meals.containsKey(choice)) {
-                return meals.get(choice);
+    // week the plan of the household is kept as in the history (-Dmealplanner.today=yyyy-mm-dd for another one)
+    private static LocalDate currentWeek() {
+        return Utils.weekStart(Utils.today());
+    }
+
+    // command RANGE : ingredients of every meal of the plan history between two dates, printed or saved like SAVE
+    private static void rangeShoppingList(Scanner scanner, MealRepository repository) throws SQLException {
+        prompt("Input the first and the last day (yyyy-mm-dd yyyy-mm-dd):");
+        LocalDate[] range = getDateRange(scanner);
+        prompt("Input a filename (or press Enter to print the list):");
+        String fileName = scanner.nextLine().trim();
+        ShoppingListExporter.Items items = consumer -> repository.forEachRangeItem(HOUSEHOLD_ID, range[0], range[1], consumer);
+        long start = System.nanoTime();
+        long count;
+        try {
+            if (fileName.isEmpty()) {
+                PrintWriter out = new PrintWriter(System.out);
+                count = ShoppingListExporter.write(items, out, ShoppingListExporter.Format.TXT);
+                out.flush();
             } else {
-                System.out.println("This meal doesn’t exist. Choose a meal from the list above.");
+                Path path = Path.of("./" + fileName);
+                count = ShoppingListExporter.export(items, path, ShoppingListExporter.Format.of(path));
             }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("An error occurred while saving the shopping list: " + e.getMessage());
+            return;
+        }
+        if (count == 0) {
+            System.out.printf("No meals planned from %s to %s.%n", range[0], range[1]);
+        } else {
+            System.out.printf("%s %d ingredients from %s to %s in %.1f ms.%n", fileName.isEmpty() ? "Listed" : "Saved",
+                    count, range[0], range[1], (System.nanoTime() - start) / 1_000_000.0);
         }
     }
 
-    // add tuple plan in plan TABLE (plan_id, category, meal_id)
-    private static void addPlan(Connection connection, String day, Category cat, int mealId) throws SQLException {
-        String insertMealSQL = "INSERT INTO plan (plan_id, category, meal_id) VALUES (?, ?, ?)";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(insertMealSQL)) {
-            preparedStatement.setString(1, day);
-            preparedStatement.setString(2, String.valueOf(cat));
-            preparedStatement.setInt(3, mealId);
+    // INPUT : "2026-01-05 2026-02-01" -> first & last day
+    private static LocalDate[] getDateRange(Scanner scanner) {
+        while (true) {
+            String[] dates = scanner.nextLine().trim().split("\\s+");
             try {
-                preparedStatement.executeUpdate();
-                List<String> ingredients = getIngredientsByMealId(connection, mealId);
-                for (String ingredient : ingredients) {
-                    addIngredientInShoppingList(connection, ingredient); // add ingredient in shoppingListTable
+                if (dates.length == 2) {
+                    LocalDate first = LocalDate.parse(dates[0]);
+                    LocalDate last = LocalDate.parse(dates[1]);
+                    if (!first.isAfter(last)) {
+                        return new LocalDate[]{first, last};
+                    }
                 }
-            } catch (SQLException e) {
-                System.out.println("Error executing update: " + e.getMessage());
+            } catch (DateTimeParseException ignored) {
+                // asked again below
             }
-
+            System.out.println("Wrong dates. Use yyyy-mm-dd yyyy-mm-dd, the first day not after the last!");
         }
     }
 
-    // add ingredient in shoppingList TABLE -> if ingredient exist increment quantity else add tuple
-    private static void addIngredientInShoppingList(Connection connection, String name) {
-        String sql = "INSERT INTO shoppingList (ingredient, quantity) VALUES (?, ?) " +
-                "ON CONFLICT (ingredient) DO UPDATE SET quantity = shoppingList.quantity + EXCLUDED.quantity";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-            preparedStatement.setString(1, name);
-            preparedStatement.setInt(2, 1);
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    // command PANTRY : "milk 2 l, egg 6, olive oil" sets amounts at home (0 removes), shopping list updated by difference
+    private static void updatePantry(Scanner scanner, MealRepository repository) throws SQLException {
+        prompt("Input the ingredients you have and their amount (milk 2 l, egg 6, olive oil, 0 removes it):");
+        List<Ingredient> items = Utils.parseAmounts(scanner.nextLine());
+        while (items == null) {
+            System.out.println("Wrong format. Use letters followed by an amount!");
+            items = Utils.parseAmounts(scanner.nextLine());
         }
+        for (Ingredient item : items) {
+            repository.setPantryItem(HOUSEHOLD_ID, item.name, item.amount);
+        }
+        System.out.println("The pantry has been updated!");
     }
 
-    // command SAVE : save shoppingList
-    private static void saveShoppingList(Scanner scanner, Connection connection) {
-        String sqlPlan = "SELECT COUNT(*) AS rowcount FROM plan";
-        String sqlShoppingList = "SELECT * FROM shoppingList";
-        try (PreparedStatement prepPlan = connection.prepareStatement(sqlPlan)) {
-            ResultSet resultPlan = prepPlan.executeQuery();
-            if (resultPlan.next() && resultPlan.getInt("rowcount") > 0 ) {
-                try (PreparedStatement prepShoppingList = connection.prepareStatement(sqlShoppingList);
-                     ResultSet resultShoppingList = prepShoppingList.executeQuery()) {
-                    saveFile(scanner, resultShoppingList);
-                } catch (SQLException | IOException e) {
-                    System.out.println("An error occurred while saving the shopping list: " + e.getMessage());
+    // INPUT : day of week -> index in daysOfWeek
+    private static int getDay(Scanner scanner) {
+        prompt("Which day do you want to change (monday, tuesday, wednesday, thursday, friday, saturday, sunday)?");
+        while (true) {
+            String input = scanner.nextLine().trim();
+            for (int day = 0; day < daysOfWeek.length; day++) {
+                if (daysOfWeek[day].equalsIgnoreCase(input)) {
+                    return day;
                 }
-            } else {
-                System.out.println("Unable to save. Plan your meals first.");
             }
-        } catch (SQLException e) {
-            System.out.println("An error occurred while checking the plan table: " + e.getMessage());
+            System.out.println("Wrong day! Choose a day of the week.");
         }
     }
 
-    // saveFile
-    private static void saveFile(Scanner scanner, ResultSet rs) throws IOException, SQLException {
-        System.out.println("Input a filename:");
-        String fileName = scanner.nextLine();
-        File file = new File("./" + fileName);
-        try (FileWriter writer = new FileWriter(file)) {
-            while (rs.next()) {
-                Ingredient ingredient = new Ingredient(rs.getString("ingredient"), rs.getInt("quantity"));
-                writer.write(String.valueOf(ingredient));
+    // command AUTO : generate plan for a week under constraints, then save it like PLAN
+    private static void makeAutoPlan(Scanner scanner, MealRepository repository) throws SQLException {
+        if (!repository.hasMeals(null)) {
+            System.out.println("No meals saved. Add a meal first.");
+            return;
+        }
+        long start = System.nanoTime();
+        PlanGenerator generator = getPlanGenerator(scanner, repository);
+        PlanGenerator.Result result = generator.generate(Long.parseLong(Utils.getSetting("auto.budget.ms", "2000")),
+                Runtime.getRuntime().availableProcessors(), System.nanoTime());
+        if (result == null) {
+            System.out.println("Unable to plan the week with these constraints.");
+            return;
+        }
+        // plan, shopping list & week of history in one transaction
+        repository.savePlan(HOUSEHOLD_ID, result.mealIds, Utils.weekStart(Utils.today()));
+        weekView.clear();
+        for (int day = 0; day < daysOfWeek.length; day++) {
+            for (Category cat : Category.values()) {
+                weekView.set(day, cat, result.getMealName(day, cat));
             }
-            System.out.println("Saved!");
-        } catch (IOException e) {
-            System.out.printf("An exception occurred %s", e.getMessage());
         }
+        System.out.printf("Planned from %d meals in %d ms: %d distinct ingredients.%n%n",
+                result.candidates, (System.nanoTime() - start) / 1_000_000, result.getDistinctIngredients());
+        weekView.display(repository);
     }
 
-    // add tuple ingredient in ingredients TABLE (ingredient, meal_id)
-    private static void addIngredients(Meal meal, int mealId, Connection connection) throws SQLException {
-        String insertIngredientSQL = "INSERT INTO ingredients (ingredient, meal_id) VALUES (?, ?)";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(insertIngredientSQL)) {
-            for (String ingredient : meal.ingredients) {
-                preparedStatement.setString(1, ingredient);
-                preparedStatement.setInt(2, mealId);
-                preparedStatement.executeUpdate();
-            }
+    // command BATCH : generate & save plans for households 1..n (household 0 is the interactive one)
+    private static void makeBatchPlans(Scanner scanner, MealRepository repository) throws SQLException {
+        if (!repository.hasMeals(null)) {
+            System.out.println("No meals saved. Add a meal first.");
+            return;
+        }
+        prompt("Input the number of households:");
+        int households = getPositiveNumber(scanner);
+        PlanGenerator generator = getPlanGenerator(scanner, repository);
+        BatchPlanner planner = new BatchPlanner(repository, generator,
+                Long.parseLong(Utils.getSetting("batch.budget.ms", "20")),
+                Integer.parseInt(Utils.getSetting("db.pool.size", "4")));
+        try {
+            planner.run(HOUSEHOLD_ID + 1, households);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Batch planning interrupted.");
         }
     }
 
-    // create List<Meal> meals -> GET meals by given category -> GET ingredients by meal_id ->
-    // -> for each meal create new Meal and add meal in List<Meal> meals
-    private static List<Meal> getMealsWithIngredients(Connection connection, String category) throws SQLException {
-        List<Meal> meals = new ArrayList<>();
-        String mealQuery = category == null ? "SELECT * FROM meals" : "SELECT * FROM meals WHERE category = ?";
-        try (PreparedStatement mealStatement = connection.prepareStatement(mealQuery)) {
-            if (category != null) {
-                mealStatement.setString(1, category);
-            }
-            try (ResultSet mealResultSet = mealStatement.executeQuery()) {
-                while (mealResultSet.next()) {
-                    Category mealCategory = Category.valueOf(mealResultSet.getString("category"));
-                    String mealName = mealResultSet.getString("meal");
-                    int mealId = mealResultSet.getInt("meal_id");
-                    List<String> ingredients = getIngredientsByMealId(connection, mealId);
-                    meals.add(new Meal(mealCategory, mealName, ingredients));
+    // INPUT : constraints of AUTO & BATCH -> generator loaded with the allowed meals
+    private static PlanGenerator getPlanGenerator(Scanner scanner, MealRepository repository) throws SQLException {
+        int repeatWindow = getRepeatWindow(scanner);
+        prompt("Input the required ingredients (or press Enter for none):");
+        Set<String> required = getOptionalIngredients(scanner);
+        prompt("Input the excluded ingredients (or press Enter for none):");
+        Set<String> excluded = getOptionalIngredients(scanner);
+        PlanGenerator generator = new PlanGenerator(repeatWindow, required);
+        generator.load(repository, excluded);
+        return generator;
+    }
+
+    // INPUT : number > 0
+    private static int getPositiveNumber(Scanner scanner) {
+        while (true) {
+            String input = scanner.nextLine().trim();
+            try {
+                int number = Integer.parseInt(input);
+                if (number > 0) {
+                    return number;
                 }
+            } catch (NumberFormatException ignored) {
+                // asked again below
             }
-        } catch (SQLException e) {
-            System.err.println("Error while fetching meals and ingredients: " + e.getMessage());
-            throw e;
+            System.out.println("Wrong number! Input a number greater than 0.");
         }
-        return meals;
     }
 
-    private static List<String> getIngredientsByMealId(Connection connection, int mealId) throws SQLException {
-        String ingredientQuery = "SELECT ingredient FROM ingredients WHERE meal_id = ?";
-        List<String> ingredients = new ArrayList<>();
-        try (PreparedStatement ingredientStatement = connection.prepareStatement(ingredientQuery)) {
-            ingredientStatement.setInt(1, mealId);
-            try (ResultSet ingredientResultSet = ingredientStatement.executeQuery()) {
-                while (ingredientResultSet.next()) {
-                    ingredients.add(ingredientResultSet.getString("ingredient"));
+    // INPUT : days before a meal can be repeated
+    private static int getRepeatWindow(Scanner scanner) {
+        prompt(String.format("Input the number of days before a meal can be repeated (1-%d):", daysOfWeek.length));
+        while (true) {
+            String input = scanner.nextLine().trim();
+            try {
+                int days = Integer.parseInt(input);
+                if (days >= 1 && days <= daysOfWeek.length) {
+                    return days;
                 }
+            } catch (NumberFormatException ignored) {
+                // asked again below
             }
+            System.out.printf("Wrong number! Choose from 1 to %d.%n", daysOfWeek.length);
         }
-        return ingredients;
     }
 
-    // fetch plan day by day, category by category
-    private static void displayPlanDay(Connection connection) throws SQLException {
-        String planQuery = "SELECT * FROM plan WHERE plan_id = ? ";
-        String mealIdQuery = "SELECT meal FROM meals WHERE meal_id = ?";
-        try (PreparedStatement mealStatement = connection.prepareStatement(mealIdQuery)) {
-            for (String day : daysOfWeek) {
-                DayPlan dayPlan = new DayPlan(day);
-                populateDayPlan(connection, planQuery, mealStatement, day, dayPlan);
-                System.out.println(dayPlan); // display plan day by day, category by category
+    // INPUT : comma separated ingredients, empty line for none
+    private static Set<String> getOptionalIngredients(Scanner scanner) {
+        while (true) {
+            String input = scanner.nextLine();
+            if (input.isBlank()) {
+                return new HashSet<>();
             }
-        } catch (SQLException e) {
-            System.err.println("Error: " + e.getMessage());
-            throw e;
+            List<String> ingredients = Utils.parseIngredients(input);
+            if (ingredients != null) {
+                return new HashSet<>(ingredients);
+            }
+            System.out.println("Wrong format. Use letters only!");
         }
     }
 
-    private static void populateDayPlan(Connection connection, String planQuery,
-                                        PreparedStatement mealStatement, String day, DayPlan dayPlan) throws SQLException {
-        try (PreparedStatement planStatement = connection.prepareStatement(planQuery)) {
-            planStatement.setString(1, day);
-            try (ResultSet planResultSet = planStatement.executeQuery()) {
-                while (planResultSet.next()) {
-                    Category mealCategory = Category.valueOf(planResultSet.getString("category"));
-                    int mealId = planResultSet.getInt("meal_id");
-                    String meal = getMealById(mealStatement, mealId);
-                    if (meal != null) {
-                        assignMealToCategory(dayPlan, mealCategory, meal);
-                    }
-                }
+    // get meals by category
+    private static Map<Category, Map<String, Integer>> getMealsByCategory(MealRepository repository) throws SQLException {
+        Map<Category, Map<String, Integer>> mealsByCategory = new HashMap<>();
+        mealsByCategory.put(Category.BREAKFAST, repository.getMealIdsByCategory(Category.BREAKFAST));
+        mealsByCategory.put(Category.LUNCH, repository.getMealIdsByCategory(Category.LUNCH));
+        mealsByCategory.put(Category.DINNER, repository.getMealIdsByCategory(Category.DINNER));
+        return mealsByCategory;
+    }
+
+    // make plan by day
+    private static void planMealsForDay(Scanner scanner, MealRepository repository, Category[] categories,
+                                        Map<Category, Map<String, Integer>> mealsByCategory, int dayIndex) {
+        String day = daysOfWeek[dayIndex];
+        prompt(day);
+        for (Category cat : categories) {
+            displayMeals(mealsByCategory.get(cat));
+            String meal = chooseMeal(scanner, mealsByCategory.get(cat), cat, day);
+            if (addPlan(repository, day, cat, mealsByCategory.get(cat).get(meal))) {
+                weekView.set(dayIndex, cat, meal);
+            } else {
+                weekView.invalidate();
             }
         }
+        System.out.printf("Yeah! We planned the meals for %s.%n%n", day);
     }
 
-    private static void assignMealToCategory(DayPlan dayPlan, Category mealCategory, String meal) {
-        switch (mealCategory) {
-            case BREAKFAST -> dayPlan.setBreakfastMeal(meal);
-            case LUNCH -> dayPlan.setLunchMeal(meal);
-            case DINNER -> dayPlan.setDinnerMeal(meal);
+    // display meals to choose from
+    private static void displayMeals(Map<String, Integer> meals) {
+        for (Map.Entry<String, Integer> entry : meals.entrySet()) {
+            prompt(entry.getKey());
         }
     }
 
-    private static String getMealById(PreparedStatement mealStatement, int mealId) throws SQLException {
-        mealStatement.setInt(1, mealId);
-        try (ResultSet mealResultSet = mealStatement.executeQuery()) {
-            if (mealResultSet.next()) {
-                return mealResultSet.getString("meal");
+    // choose meal -> meal name
+    private static String chooseMeal(Scanner scanner, Map<String, Integer> meals, Category category, String day) {
+        while (true) {
+            String str = category.toString().toLowerCase();
+            prompt(String.format("Choose the %s for %s from the list above:", str, day));
+            String choice = scanner.nextLine();
+            if (meals.containsKey(choice)) {
+                return choice;
+            } else {
+                System.out.println("This meal doesn’t exist. Choose a meal from the list above.");
             }
         }
-        return null;
     }
 
-    // get meal_id from meals by category
-    private static Map<String, Integer> getMealIdAndMealByCategory(Connection connection, Category category) throws SQLException {
-        Map<String, Integer> meals = new TreeMap<>();
-        String mealQuery = "SELECT meal_id, meal FROM meals WHERE category = ?";
-        try (PreparedStatement mealStatement = connection.prepareStatement(mealQuery)) {
-            mealStatement.setString(1, String.valueOf(category));
-            try (ResultSet mealResultSet = mealStatement.executeQuery()) {
-                while (mealResultSet.next()) {
-                    int mealId = mealResultSet.getInt("meal_id");
-                    String mealName = mealResultSet.getString("meal");
-                    meals.put(mealName, mealId);
+    // add tuple plan in plan TABLE (plan_id, category, meal_id), may only be queued (see flushPlan)
+    private static boolean addPlan(MealRepository repository, String day, Category cat, int mealId) {
+        try {
+            repository.addPlan(HOUSEHOLD_ID, day, cat, mealId);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Error executing update: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // wait for plan rows written in the background -> failed rows are reported and the plan is read back from the repository
+    private static boolean flushPlan(MealRepository repository) {
+        try {
+            repository.flush();
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Error saving the plan: " + e.getMessage());
+            weekView.invalidate();
+            return false;
+        }
+    }
+
+    // command SAVE : save shoppingList
+    private static void saveShoppingList(Scanner scanner, MealRepository repository) {
+        if (!flushPlan(repository)) {
+            return;
+        }
+        try {
+            if (repository.hasPlan(HOUSEHOLD_ID)) {
+                try {
+                    saveFile(scanner, repository);
+                } catch (SQLException | IOException e) {
+                    System.out.println("An error occurred while saving the shopping list: " + e.getMessage());
                 }
+            } else {
+                System.out.println("Unable to save. Plan your meals first.");
             }
+        } catch (SQLException e) {
+            System.out.println("An error occurred while checking the plan table: " + e.getMessage());
         }
-        return meals;
     }
 
-    // CREATE List<Meal> meals fetching meals with ingredients by category
-    private static void selectCategory(Scanner scanner, Connection connection) {
-        List<Meal> meals = new ArrayList<>();
+    // saveFile : .csv & .json extensions select the format, anything else is the text format
+    private static void saveFile(Scanner scanner, MealRepository repository) throws IOException, SQLException {
+        prompt("Input a filename:");
+        String fileName = scanner.nextLine();
+        try {
+            Path path = Path.of("./" + fileName);
+            ShoppingListExporter.export(repository, HOUSEHOLD_ID, path, ShoppingListExporter.Format.of(path));
+            System.out.println("Saved!");
+        } catch (IOException | InvalidPathException e) {
+            System.out.printf("An exception occurred %s", e.getMessage());
+        }
+    }
+
+    // stream meals with ingredients by category and display them : "lunch", "lunch 3" (page 3), "lunch compact"
+    // page size : setting show.page.size (0 : the whole category), format : setting show.format (full or compact)
+    private static void selectCategory(Scanner scanner, MealRepository repository) {
+        int pageSize = Math.max(0, Integer.parseInt(Utils.getSetting("show.page.size", "0")));
+        MealRenderer.Format format = MealRenderer.Format.of(Utils.getSetting("show.format", "full"));
         Category category = null;
+        int page = 1;
         while (category == null) {
-            String input = scanner.nextLine().toUpperCase();
-            if (Utils.isValidEnumValue(Category.class, input)) {
-                try {
-                    category = Category.valueOf(input);
-                    meals = getMealsWithIngredients(connection, input);
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
+            String[] words = scanner.nextLine().trim().toUpperCase().split("\\s+");
+            if (!Utils.isValidEnumValue(Category.class, words[0])) {
+                System.out.println("Wrong meal category! Choose from: breakfast, lunch, dinner.");
+                continue;
+            }
+            page = 1;
+            boolean valid = true;
+            for (int i = 1; i < words.length && valid; i++) {
+                if (words[i].matches("\\d{1,9}") && Integer.parseInt(words[i]) > 0) {
+                    page = Integer.parseInt(words[i]);
+                } else if (MealRenderer.Format.of(words[i]) != null) {
+                    format = MealRenderer.Format.of(words[i]);
+                } else {
+                    valid = false;
                 }
+            }
+            if (valid) {
+                category = Category.valueOf(words[0]);
             } else {
-                System.out.println("Wrong meal category! Choose from: breakfast, lunch, dinner.");
+                System.out.println("Wrong page or format! Use: category [page] [compact], e.g. lunch 2 compact.");
             }
         }
-        // DISPLAY meals with ingredients by category
-        if (!meals.isEmpty()) {
-            System.out.printf("Category: %s\n\n", category);
-            for (Meal meal : meals) {
-                System.out.println(meal);
-            }
-        } else {
-            System.out.println("No meals found.");
-            start(scanner, connection);
+        // DISPLAY meals with ingredients by category, flushed once at the end
+        PrintWriter out = new PrintWriter(System.out);
+        try {
+            new MealRenderer(out, format == null ? MealRenderer.Format.FULL : format)
+                    .renderPage(repository, category, page, pageSize);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            out.flush();
         }
     }
 
     // INPUT : get category
     private static Category getCategory(Scanner scanner) {
+        return getCategory(scanner, "Which meal do you want to add (breakfast, lunch, dinner)?");
+    }
+
+    private static Category getCategory(Scanner scanner, String question) {
         Category category = null;
-        System.out.println("Which meal do you want to add (breakfast, lunch, dinner)?");
+        prompt(question);
         while (category == null) {
             String input = scanner.nextLine().toUpperCase();
             try {
@@ -424,7 +669,7 @@ public class Main {
     // INPUT : get name (meal)
     private static String getName(Scanner scanner) {
         String input = null;
-        System.out.println("Input the meal's name:");
+        prompt("Input the meal's name:");
 
         while (input == null) {
             input = scanner.nextLine();
@@ -438,21 +683,12 @@ public class Main {
     }
 
     // INPUT : get ingredients
-    private static List getIngredients(Scanner scanner) {
-        List<String> ingredients = new ArrayList<>();
-        System.out.println("Input the ingredients:");
-        while (ingredients.isEmpty()) {
-            String input = scanner.nextLine();
-            String[] strings = input.split(",");
-            for (String str : strings) {
-                if (Utils.isValid(str.trim())) {
-                    ingredients.add(str.trim());
-                } else {
-                    System.out.println("Wrong format. Use letters only!");
-                    ingredients.clear();
-                    break;
-                }
-            }
+    private static List<Ingredient> getIngredients(Scanner scanner) {
+        prompt("Input the ingredients:");
+        List<Ingredient> ingredients = Utils.parseAmounts(scanner.nextLine());
+        while (ingredients == null) {
+            System.out.println("Wrong format. Use letters only!");
+            ingredients = Utils.parseAmounts(scanner.nextLine());
         }
         return ingredients;
     }
@@ -1,12 +1,23 @@
 package mealplanner;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeSet;
 
 public class Meal {
+    int id; // meal_id, 0 if not saved
     mealplanner.Category category;
     String name;
     List<String> ingredients;
+    List<Amount> amounts; // amount of each ingredient (same index), null = one piece each
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
 
     public mealplanner.Category getCategory() {
         return category;
@@ -38,12 +49,28 @@ public class Meal {
         this.ingredients = ingredients;
     }
 
+    public Meal(mealplanner.Category category, String name, List<String> ingredients, List<Amount> amounts) {
+        this(category, name, ingredients);
+        this.amounts = amounts;
+    }
+
+    // meal from parsed "name amount" items
+    public static Meal of(mealplanner.Category category, String name, List<Ingredient> items) {
+        List<String> ingredients = new ArrayList<>(items.size());
+        List<Amount> amounts = new ArrayList<>(items.size());
+        for (Ingredient item : items) {
+            ingredients.add(item.name);
+            amounts.add(item.amount);
+        }
+        return new Meal(category, name, ingredients, amounts);
+    }
+
+    public Amount getAmount(int index) {
+        return amounts == null ? Amount.ONE_PIECE : amounts.get(index);
+    }
+
     @Override
     public String toString() {
-        return String.format("""
-                Name: %s
-                Ingredients:
-                %s                
-                """, this.name, String.join("\n", ingredients));
+        return MealRenderer.appendFull(new StringBuilder(128), this).toString();
     }
 }
\ No newline at end of file
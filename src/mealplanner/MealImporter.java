@@ -0,0 +1,171 @@
+package mealplanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MealImporter {
+
+    public static final int CHUNK_SIZE = 500;
+    private static final Set<String> JSON_KEYS = Set.of("category", "meal", "name", "ingredients");
+
+    private MealImporter() {
+    }
+
+    // command IMPORT : read meals from a CSV (category,meal,"ingredient, ingredient") or JSON lines file
+    // each chunk is written in its own transaction -> a failed chunk is rolled back and the import goes on
+    // imported meals are added to the search index (if not null)
+    public static void importFile(MealRepository repository, Path path, MealIndex index) throws IOException {
+        boolean jsonLines = path.getFileName().toString().toLowerCase().matches(".*\\.(jsonl|json|ndjson)");
+        long start = System.nanoTime();
+        int lineNumber = 0;
+        int chunkStartLine = 1;
+        int importedMeals = 0;
+        long importedRows = 0;
+        int rejected = 0;
+        List<String> failedChunks = new ArrayList<>();
+        List<Meal> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (!jsonLines && lineNumber == 1 && line.toLowerCase().startsWith("category,"))) {
+                    continue; // skip empty lines and CSV header
+                }
+                Meal meal = jsonLines ? parseJsonLine(line) : parseCsvLine(line);
+                if (meal == null) {
+                    System.out.printf("Line %d skipped: wrong format.%n", lineNumber);
+                    rejected++;
+                    continue;
+                }
+                if (chunk.isEmpty()) {
+                    chunkStartLine = lineNumber;
+                }
+                chunk.add(meal);
+                if (chunk.size() == CHUNK_SIZE) {
+                    long rows = writeChunk(repository, index, chunk, chunkStartLine, lineNumber, failedChunks);
+                    if (rows > 0) {
+                        importedMeals += chunk.size();
+                        importedRows += rows;
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            long rows = writeChunk(repository, index, chunk, chunkStartLine, lineNumber, failedChunks);
+            if (rows > 0) {
+                importedMeals += chunk.size();
+                importedRows += rows;
+            }
+        }
+        double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 1e-9);
+        System.out.printf("Imported %d meals (%d rows) in %.2f s, %.0f rows/s.%n",
+                importedMeals, importedRows, seconds, importedRows / seconds);
+        if (rejected > 0) {
+            System.out.printf("%d lines rejected.%n", rejected);
+        }
+        for (String failedChunk : failedChunks) {
+            System.out.println("Not imported, fix and import again: " + failedChunk);
+        }
+    }
+
+    // write one chunk -> return number of rows written (0 if the chunk was rolled back)
+    private static long writeChunk(MealRepository repository, MealIndex index, List<Meal> chunk, int fromLine,
+                                   int toLine, List<String> failedChunks) {
+        int[] mealIds;
+        try {
+            mealIds = repository.addMeals(chunk);
+        } catch (SQLException e) {
+            failedChunks.add(String.format("lines %d-%d (%s)", fromLine, toLine, e.getMessage()));
+            return 0;
+        }
+        long rows = chunk.size();
+        for (int i = 0; i < chunk.size(); i++) {
+            Meal meal = chunk.get(i);
+            meal.id = mealIds[i];
+            if (index != null) {
+                index.add(meal);
+            }
+            rows += meal.ingredients.size();
+        }
+        return rows;
+    }
+
+    // create Meal from category, name & ingredients with their amounts (already checked) -> null if one of them is not valid
+    private static Meal toMeal(String category, String name, List<Ingredient> ingredients) {
+        if (category == null || name == null || ingredients == null || ingredients.isEmpty()) {
+            return null;
+        }
+        String upperCategory = category.trim().toUpperCase();
+        if (!Utils.isValidEnumValue(Category.class, upperCategory) || !Utils.isValid(name.trim())) {
+            return null;
+        }
+        return Meal.of(Category.valueOf(upperCategory), name.trim(), ingredients);
+    }
+
+    // CSV line : category,meal,ingredients (ingredients field quoted when it contains commas, "flour 500 g, egg 2")
+    static Meal parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',' && fields.size() < 2) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted || fields.size() != 2) {
+            return null;
+        }
+        return toMeal(fields.get(0), fields.get(1), Utils.parseAmounts(field.toString()));
+    }
+
+    // JSON line : {"category": "lunch", "meal": "salad", "ingredients": ["lettuce", "tomato 2", "olive oil 1 tbsp"]}
+    static Meal parseJsonLine(String line) {
+        Map<String, Object> object;
+        try {
+            object = Json.parseObject(line);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Object category = object.get("category");
+        Object meal = object.containsKey("meal") ? object.get("meal") : object.get("name");
+        Object items = object.get("ingredients");
+        if (!JSON_KEYS.containsAll(object.keySet()) || !(category instanceof String) || !(meal instanceof String)
+                || !(items instanceof List<?> list)) {
+            return null;
+        }
+        List<Ingredient> ingredients = new ArrayList<>(list.size());
+        for (Object item : list) {
+            String ingredient = (String) item;
+            List<Ingredient> parsed = ingredient.indexOf(',') < 0 ? Utils.parseAmounts(ingredient) : null;
+            if (parsed == null) {
+                return null;
+            }
+            ingredients.add(parsed.get(0));
+        }
+        return toMeal((String) category, (String) meal, ingredients);
+    }
+}
@@ -0,0 +1,374 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// in-memory search over the catalog : ingredient token -> sorted meal ids (inverted index),
+// word prefix of meal names -> meal ids (trie), queries intersect & subtract sorted int[] postings, dense lists as bit sets
+// built once from the repository (one query), then kept up to date by add()
+public class MealIndex {
+
+    private final Map<String, Postings> byIngredient = new HashMap<>();
+    private final TrieNode names = new TrieNode();
+    private final Postings all = new Postings();
+    private int maxId = 0;
+    private String[] mealNames = new String[1024]; // by meal_id
+    private Category[] categories = new Category[1024]; // by meal_id
+
+    // meal ids in ascending order, no duplicates + same ids as bits once the list is dense
+    private static class Postings {
+        int size;
+        int[] ids = new int[4];
+        BitSet bits;
+
+        void add(int id) {
+            if (bits != null) {
+                bits.set(id);
+            }
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insert(-index - 1, id);
+                return;
+            }
+            insert(size, id);
+        }
+
+        private void insert(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+    }
+
+    // children sorted by character, ids = meals with a name word ending here
+    // subtree = ids of the whole subtree, kept once a prefix query found it dense
+    private static class TrieNode {
+        char[] keys = new char[0];
+        TrieNode[] children = new TrieNode[0];
+        Postings ids;
+        BitSet subtree;
+
+        TrieNode child(char c, boolean create) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (!create) {
+                return null;
+            }
+            index = -index - 1;
+            keys = insert(keys, index, c);
+            TrieNode node = new TrieNode();
+            TrieNode[] grown = new TrieNode[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            grown[index] = node;
+            children = grown;
+            return node;
+        }
+
+        private static char[] insert(char[] array, int index, char c) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            System.arraycopy(array, index, grown, index + 1, array.length - index);
+            grown[index] = c;
+            return grown;
+        }
+
+        void collect(BitSet result) {
+            if (ids != null) {
+                for (int i = 0; i < ids.size; i++) {
+                    result.set(ids.ids[i]);
+                }
+            }
+            for (TrieNode child : children) {
+                child.collect(result);
+            }
+        }
+    }
+
+    // query : every included ingredient, no excluded ingredient, a name word starting with namePrefix (if not null)
+    public static class Query {
+        final List<String> included = new ArrayList<>();
+        final List<String> excluded = new ArrayList<>();
+        String namePrefix;
+
+        // comma separated terms : "chicken, -nuts, name:cu"
+        public static Query parse(String input) {
+            Query query = new Query();
+            for (String term : input.split(",")) {
+                String token = term.trim().toLowerCase(Locale.ROOT);
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (token.startsWith("name:")) {
+                    query.namePrefix = token.substring(5).trim();
+                } else if (token.startsWith("-")) {
+                    query.excluded.add(token.substring(1).trim());
+                } else {
+                    query.included.add(token);
+                }
+            }
+            return query;
+        }
+
+        public boolean isEmpty() {
+            return included.isEmpty() && excluded.isEmpty() && namePrefix == null;
+        }
+    }
+
+    // result : matching meal ids (ascending), names & categories of the first ones
+    public static class Result {
+        final int count;
+        final int[] mealIds;
+        final String[] names;
+        final Category[] categories;
+
+        Result(int count, int[] mealIds, String[] names, Category[] categories) {
+            this.count = count;
+            this.mealIds = mealIds;
+            this.names = names;
+            this.categories = categories;
+        }
+    }
+
+    public static MealIndex build(MealRepository repository) throws SQLException {
+        MealIndex index = new MealIndex();
+        repository.forEachMeal(null, index::add);
+        return index;
+    }
+
+    public synchronized int size() {
+        return all.size;
+    }
+
+    // meal must have its meal_id
+    public synchronized void add(Meal meal) {
+        int id = meal.id;
+        if (id >= mealNames.length) {
+            int length = Math.max(id + 1, mealNames.length * 2);
+            mealNames = Arrays.copyOf(mealNames, length);
+            categories = Arrays.copyOf(categories, length);
+        }
+        mealNames[id] = meal.name;
+        categories[id] = meal.category;
+        maxId = Math.max(maxId, id);
+        all.add(id);
+        for (String ingredient : meal.ingredients) {
+            for (String token : tokens(ingredient)) {
+                byIngredient.computeIfAbsent(token, key -> new Postings()).add(id);
+            }
+        }
+        for (String word : meal.name.toLowerCase(Locale.ROOT).split("\\s+")) {
+            TrieNode node = names;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.child(word.charAt(i), true);
+                if (node.subtree != null) {
+                    node.subtree.set(id);
+                }
+            }
+            if (node.ids == null) {
+                node.ids = new Postings();
+            }
+            node.ids.add(id);
+        }
+    }
+
+    // whole ingredient name + each of its words ("olive oil" -> "olive oil", "olive", "oil")
+    private static List<String> tokens(String ingredient) {
+        String name = ingredient.toLowerCase(Locale.ROOT).trim();
+        List<String> tokens = new ArrayList<>(3);
+        tokens.add(name);
+        String[] words = name.split("\\s+");
+        if (words.length > 1) {
+            for (String word : words) {
+                if (!tokens.contains(word)) {
+                    tokens.add(word);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // bits cost less than the int[] when more than 1 id in 32 is present -> dense lists are ANDed word by word
+    private boolean isDense(int size) {
+        return size >= 64 && size > maxId / 32;
+    }
+
+    private BitSet bits(Postings postings) {
+        if (postings.bits == null) {
+            BitSet bits = new BitSet(maxId + 1);
+            for (int i = 0; i < postings.size; i++) {
+                bits.set(postings.ids[i]);
+            }
+            postings.bits = bits;
+        }
+        return postings.bits;
+    }
+
+    // matching meals, names & categories of the first limit ones
+    // smallest included list is sparse -> each of its ids is checked, else bit sets are combined
+    public synchronized Result search(Query query, int limit) {
+        List<Postings> included = new ArrayList<>();
+        for (String ingredient : query.included) {
+            Postings postings = byIngredient.get(ingredient);
+            if (postings == null) {
+                return result(new int[0], 0);
+            }
+            included.add(postings);
+        }
+        included.sort((a, b) -> Integer.compare(a.size, b.size));
+        List<Postings> excluded = new ArrayList<>();
+        for (String ingredient : query.excluded) {
+            Postings postings = byIngredient.get(ingredient);
+            if (postings != null) {
+                excluded.add(postings);
+            }
+        }
+        for (Postings postings : included) {
+            if (isDense(postings.size)) {
+                bits(postings);
+            }
+        }
+        for (Postings postings : excluded) {
+            if (isDense(postings.size)) {
+                bits(postings);
+            }
+        }
+        BitSet named = query.namePrefix == null ? null : namePrefix(query.namePrefix);
+        if (!included.isEmpty() && !isDense(included.get(0).size)) {
+            Postings first = included.get(0);
+            Cursor[] others = new Cursor[included.size() - 1];
+            for (int i = 1; i < included.size(); i++) {
+                others[i - 1] = new Cursor(included.get(i));
+            }
+            Cursor[] without = new Cursor[excluded.size()];
+            for (int i = 0; i < without.length; i++) {
+                without[i] = new Cursor(excluded.get(i));
+            }
+            int[] ids = new int[Math.max(0, limit)];
+            int count = 0;
+            for (int i = 0; i < first.size; i++) {
+                int id = first.ids[i];
+                if (matches(id, others, named, without)) {
+                    if (count < ids.length) {
+                        ids[count] = id;
+                    }
+                    count++;
+                }
+            }
+            return result(Arrays.copyOf(ids, Math.min(count, ids.length)), count);
+        }
+        BitSet matching = (BitSet) (!included.isEmpty() ? included.get(0).bits : named != null ? named : bits(all)).clone();
+        for (Postings postings : included) {
+            matching.and(postings.bits);
+        }
+        if (named != null) {
+            matching.and(named);
+        }
+        for (Postings postings : excluded) {
+            if (postings.bits != null) {
+                matching.andNot(postings.bits);
+            } else {
+                for (int i = 0; i < postings.size; i++) {
+                    matching.clear(postings.ids[i]);
+                }
+            }
+        }
+        int count = matching.cardinality();
+        int[] ids = new int[Math.min(Math.max(0, limit), count)];
+        for (int i = 0, id = matching.nextSetBit(0); i < ids.length; i++, id = matching.nextSetBit(id + 1)) {
+            ids[i] = id;
+        }
+        return result(ids, count);
+    }
+
+    private Result result(int[] ids, int count) {
+        String[] names = new String[ids.length];
+        Category[] mealCategories = new Category[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            names[i] = mealNames[ids[i]];
+            mealCategories[i] = categories[ids[i]];
+        }
+        return new Result(count, ids, names, mealCategories);
+    }
+
+    private static boolean matches(int id, Cursor[] included, BitSet named, Cursor[] excluded) {
+        if (named != null && !named.get(id)) {
+            return false;
+        }
+        for (Cursor cursor : included) {
+            if (!cursor.contains(id)) {
+                return false;
+            }
+        }
+        for (Cursor cursor : excluded) {
+            if (cursor.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // position in a postings list, ids asked in ascending order
+    private static class Cursor {
+        final Postings postings;
+        int position;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        // bit test, or gallop forward to the first id >= the given one
+        boolean contains(int id) {
+            if (postings.bits != null) {
+                return postings.bits.get(id);
+            }
+            int[] ids = postings.ids;
+            int size = postings.size;
+            if (position < size && ids[position] < id) {
+                int step = 1;
+                while (position + step < size && ids[position + step] < id) {
+                    position += step;
+                    step <<= 1;
+                }
+                int index = Arrays.binarySearch(ids, position + 1, Math.min(position + step + 1, size), id);
+                position = index >= 0 ? index : -index - 1;
+            }
+            return position < size && ids[position] == id;
+        }
+    }
+
+    // meals with a name word starting with prefix (shared set, not to be modified)
+    private BitSet namePrefix(String prefix) {
+        TrieNode node = names;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i), false);
+        }
+        if (node == null) {
+            return new BitSet();
+        }
+        if (node.subtree != null) {
+            return node.subtree;
+        }
+        BitSet result = new BitSet(maxId + 1);
+        node.collect(result);
+        if (node != names && isDense(result.cardinality())) {
+            node.subtree = result; // kept up to date by add()
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package mealplanner;
+
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.util.Locale;
+
+// SHOW output : meals streamed from the repository into one buffered writer, the text of each meal composed in one
+// reused builder (no String.format, no line flushed on its own) -> a category of 100 000 meals prints without stalls
+// a page is pageSize meals in meal_id order, the repository skips the meals of the pages before
+public class MealRenderer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    public enum Format {
+        FULL,    // text of Meal.toString followed by a blank line, as SHOW always printed
+        COMPACT; // "chicken salad: chicken 300 g, lettuce, tomato x2" one line per meal
+
+        // "full" / "compact", any case -> null if neither
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final PrintWriter writer;
+    private final Format format;
+    private final StringBuilder text = new StringBuilder(512);
+    private char[] chars = new char[512];
+
+    public MealRenderer(PrintWriter writer, Format format) {
+        this.writer = writer;
+        this.format = format;
+    }
+
+    // "Name: ...\nIngredients:\n" then one ingredient per line
+    static StringBuilder appendFull(StringBuilder text, Meal meal) {
+        text.append("Name: ").append(meal.name).append("\nIngredients:\n");
+        for (int i = 0; i < meal.ingredients.size(); i++) {
+            Ingredient.appendText(text, meal.ingredients.get(i), meal.getAmount(i)).append('\n');
+        }
+        return meal.ingredients.isEmpty() ? text.append('\n') : text; // empty line where the ingredients would be
+    }
+
+    static StringBuilder appendCompact(StringBuilder text, Meal meal) {
+        text.append(meal.name).append(':');
+        for (int i = 0; i < meal.ingredients.size(); i++) {
+            Ingredient.appendText(text.append(i == 0 ? " " : ", "), meal.ingredients.get(i), meal.getAmount(i));
+        }
+        return text;
+    }
+
+    // one meal, copied to the writer in one call
+    public void render(Meal meal) {
+        text.setLength(0);
+        (format == Format.FULL ? appendFull(text, meal) : appendCompact(text, meal)).append(LINE_SEPARATOR);
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        text.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
+
+    // page (from 1) of the meals of the category with the "Category: ..." header, pageSize 0 : the whole category is
+    // page 1 -> number of meals rendered
+    // paged : one more meal is read to tell whether a next page exists, the footer says which meals were shown
+    public int renderPage(MealRepository repository, Category category, int page, int pageSize) throws SQLException {
+        int offset = pageSize == 0 ? (page == 1 ? 0 : Integer.MAX_VALUE)
+                : (int) Math.min((page - 1L) * pageSize, Integer.MAX_VALUE);
+        int limit = pageSize == 0 ? Integer.MAX_VALUE : pageSize + 1;
+        int[] rendered = {0};
+        int read = repository.forEachMeal(category, offset, limit, meal -> {
+            if (rendered[0] == 0) {
+                writer.printf("Category: %s\n\n", category);
+            }
+            if (pageSize == 0 || rendered[0] < pageSize) {
+                render(meal);
+                rendered[0]++;
+            }
+        });
+        if (rendered[0] == 0) {
+            writer.println(page == 1 ? "No meals found." : "No meals on page " + page + ".");
+        } else if (pageSize > 0 && read > rendered[0]) {
+            writer.printf("Page %d: meals %d-%d. For the next page: show, then \"%s %d\".%n", page, offset + 1,
+                    offset + rendered[0], category.toString().toLowerCase(Locale.ROOT), page + 1);
+        } else if (pageSize > 0) {
+            writer.printf("Page %d: meals %d-%d (last page).%n", page, offset + 1, offset + rendered[0]);
+        }
+        return rendered[0];
+    }
+}
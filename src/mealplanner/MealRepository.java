@@ -0,0 +1,89 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// storage of meals, ingredients, plan & shopping list
+public interface MealRepository extends AutoCloseable {
+
+    // add meals with their ingredients in one transaction -> return meal_id for each meal (same order)
+    int[] addMeals(List<Meal> meals) throws SQLException;
+
+    // check if at least one meal is saved (all categories if category is null)
+    boolean hasMeals(Category category) throws SQLException;
+
+    // pass each meal with its ingredients to consumer, ordered by meal_id -> return number of meals
+    int forEachMeal(Category category, Consumer<Meal> consumer) throws SQLException;
+
+    // same for one page : the meals offset .. offset + limit - 1 of that order, those before are skipped unread
+    int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) throws SQLException;
+
+    // meal name -> meal_id, sorted by name
+    Map<String, Integer> getMealIdsByCategory(Category category) throws SQLException;
+
+    List<String> getIngredientsByMealId(int mealId) throws SQLException;
+
+    // highest meal_id, 0 if no meals
+    int getMaxMealId() throws SQLException;
+
+    // changes whenever meals or their ingredients are written (added, or edited in the database)
+    long getCatalogVersion() throws SQLException;
+
+    // plan & shopping list belong to a household (Main.HOUSEHOLD_ID for the interactive session)
+
+    // remove plan & shopping list of the household
+    void clearPlan(int householdId) throws SQLException;
+
+    void addPlan(int householdId, String day, Category category, int mealId) throws SQLException;
+
+    // add plan rows (slot = day * 3 + category.ordinal()) in one batch & transaction
+    void addPlans(int householdId, int[] slots, int[] mealIds) throws SQLException;
+
+    // replace plan of the household (meal_id by slot, slot = day * 3 + category.ordinal()), build its
+    // shopping list and record it as the week starting weekStart (a Monday) of the history, in one transaction
+    void savePlan(int householdId, int[] mealIds, LocalDate weekStart) throws SQLException;
+
+    boolean hasPlan(int householdId) throws SQLException;
+
+    // planned meal names [day][category] (index in Main.daysOfWeek, Category.ordinal()), null if not planned
+    String[][] getWeekPlan(int householdId) throws SQLException;
+
+    // replace the meal of one slot and apply the difference of ingredients to the shopping list, one transaction
+    // -> return previous meal_id, 0 if the slot was empty
+    int replanSlot(int householdId, String day, Category category, int mealId) throws SQLException;
+
+    // same, and the plan recorded as the week starting weekStart in that transaction (see recordWeek)
+    int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart) throws SQLException;
+
+    // set amount of an ingredient in the pantry (one entry by dimension, 0 removes it) and apply the difference
+    // to the shopping list
+    void setPantryItem(int householdId, String ingredient, Amount amount) throws SQLException;
+
+    // replace shopping list with the ingredients of the whole plan minus the pantry
+    void buildShoppingList(int householdId) throws SQLException;
+
+    // same, and the plan recorded as the week starting weekStart, in one transaction (see recordWeek)
+    void buildShoppingList(int householdId, LocalDate weekStart) throws SQLException;
+
+    // items still to buy (amount > 0), sorted by ingredient name then dimension
+    void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) throws SQLException;
+
+    // copy the current plan into the history as the week starting weekStart (a Monday), replacing that week
+    // (no current plan -> the week is removed)
+    void recordWeek(int householdId, LocalDate weekStart) throws SQLException;
+
+    // amounts of every meal of the history planned from first to last (both included), summed by ingredient & unit,
+    // sorted by ingredient name then dimension (pantry not subtracted : it is what is at home now)
+    void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer)
+            throws SQLException;
+
+    // wait until writes accepted so far are saved, report those that failed (nothing to wait for by default)
+    default void flush() throws SQLException {
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,195 @@
+package mealplanner;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// latency of commands & JDBC statements + cache counters, shown by command STATS and as JMX MBeans (mealplanner:*)
+// switched off with -Dmealplanner.metrics=false
+public class Metrics {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(Utils.getSetting("metrics", "true"));
+
+    private static final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>(); // "group/name" -> timer
+    private static final List<ReadThroughCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    private Metrics() {
+    }
+
+    // JMX view of one timer (milliseconds)
+    public interface TimerMXBean {
+        long getCount();
+
+        long getRows();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP95Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+    }
+
+    // JMX view of one cache
+    public interface CacheMXBean {
+        int getSize();
+
+        long getHits();
+
+        long getMisses();
+    }
+
+    public static class Timer implements TimerMXBean {
+        final String group;
+        final String name;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+
+        Timer(String group, String name) {
+            this.group = group;
+            this.name = name;
+        }
+
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        // rows read or written
+        public void addRows(long count) {
+            if (count > 0) {
+                rows.add(count);
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.getMeanNanos() / 1_000_000.0;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.percentile(50) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP95Millis() {
+            return histogram.percentile(95) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.percentile(99) / 1_000_000.0;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.getMaxNanos() / 1_000_000.0;
+        }
+    }
+
+    private static class CacheView implements CacheMXBean {
+        private final ReadThroughCache<?, ?> cache;
+
+        CacheView(ReadThroughCache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public int getSize() {
+            return cache.size();
+        }
+
+        @Override
+        public long getHits() {
+            return cache.getHits();
+        }
+
+        @Override
+        public long getMisses() {
+            return cache.getMisses();
+        }
+    }
+
+    // timer of group (Command, Statement ...) & name, created and registered in JMX on first use
+    public static Timer timer(String group, String name) {
+        Timer timer = timers.get(group + "/" + name);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(group + "/" + name, key -> {
+            Timer created = new Timer(group, name);
+            register(group, name, created);
+            return created;
+        });
+    }
+
+    public static void registerCache(String name, ReadThroughCache<?, ?> cache) {
+        caches.add(cache);
+        register("Cache", name, new CacheView(cache));
+    }
+
+    // JMX is optional : a failed registration only hides the MBean
+    private static void register(String group, String name, Object mbean) {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("mealplanner:type=" + group + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("MBean " + name + " not registered: " + e.getMessage());
+        }
+    }
+
+    // command STATS : one line per timer (sorted by group & name), then caches
+    public static void print(PrintStream out) {
+        if (!ENABLED) {
+            out.println("Metrics are disabled.");
+            return;
+        }
+        Map<String, Timer> sorted = new TreeMap<>(timers);
+        String group = null;
+        for (Timer timer : sorted.values()) {
+            if (!timer.group.equals(group)) {
+                group = timer.group;
+                out.printf("%-32s %8s %9s %9s %9s %9s %9s %10s%n", group, "count", "mean ms", "p50 ms",
+                        "p95 ms", "p99 ms", "max ms", "rows");
+            }
+            out.printf("%-32s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %10d%n", timer.name, timer.getCount(),
+                    timer.getMeanMillis(), timer.getP50Millis(), timer.getP95Millis(), timer.getP99Millis(),
+                    timer.getMaxMillis(), timer.getRows());
+        }
+        if (sorted.isEmpty()) {
+            out.println("Nothing measured yet.");
+        }
+        for (ReadThroughCache<?, ?> cache : caches) {
+            out.println(cache);
+        }
+    }
+}
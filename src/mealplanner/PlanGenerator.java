@@ -0,0 +1,336 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// week plan without prompts : fewest distinct ingredients, no meal repeated within repeatWindow days,
+// required ingredients present somewhere in the week, meals with an excluded ingredient never chosen
+// search = randomized greedy construction + local improvement, restarted in parallel (fork-join pool)
+// until the time budget is spent, partial plans worse than the best known plan are abandoned
+public class PlanGenerator {
+
+    public static final int DAYS = Main.daysOfWeek.length;
+    public static final int CATEGORIES = Category.values().length;
+    public static final int SLOTS = DAYS * CATEGORIES; // slot = day * CATEGORIES + category.ordinal()
+    // covering a missing required ingredient always beats adding fewer new ingredients
+    private static final int REQUIRED_BONUS = 1_000;
+
+    private final int repeatWindow;
+    private final Candidates[] candidates = new Candidates[CATEGORIES];
+    private final IngredientDictionary ingredientIds = new IngredientDictionary(); // lower case names
+    private final int[] required;
+
+    // meals of one category : meal_id, name & distinct ingredient ids
+    private static class Candidates {
+        int size;
+        int[] mealIds = new int[16];
+        String[] names = new String[16];
+        int[][] ingredients = new int[16][];
+
+        void add(int mealId, String name, int[] mealIngredients) {
+            if (size == mealIds.length) {
+                mealIds = Arrays.copyOf(mealIds, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+                ingredients = Arrays.copyOf(ingredients, size * 2);
+            }
+            mealIds[size] = mealId;
+            names[size] = name;
+            ingredients[size] = mealIngredients;
+            size++;
+        }
+    }
+
+    // result : meal_id by slot & number of distinct ingredients
+    public static class Result {
+        final int[] mealIds;
+        final String[] mealNames;
+        final int distinctIngredients;
+        final int candidates;
+        final int constructions;
+
+        Result(int[] mealIds, String[] mealNames, int distinctIngredients, int candidates, int constructions) {
+            this.mealIds = mealIds;
+            this.mealNames = mealNames;
+            this.distinctIngredients = distinctIngredients;
+            this.candidates = candidates;
+            this.constructions = constructions;
+        }
+
+        public int getMealId(int day, Category category) {
+            return mealIds[day * CATEGORIES + category.ordinal()];
+        }
+
+        public String getMealName(int day, Category category) {
+            return mealNames[day * CATEGORIES + category.ordinal()];
+        }
+
+        public int getDistinctIngredients() {
+            return distinctIngredients;
+        }
+    }
+
+    // state of one generate() call, shared by its workers
+    private static class Search {
+        final long deadline;
+        final AtomicInteger bestCost = new AtomicInteger(Integer.MAX_VALUE);
+        final AtomicInteger constructions = new AtomicInteger();
+
+        Search(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    public PlanGenerator(int repeatWindow, Set<String> requiredIngredients) {
+        this.repeatWindow = Math.max(1, repeatWindow);
+        for (int c = 0; c < CATEGORIES; c++) {
+            candidates[c] = new Candidates();
+        }
+        this.required = requiredIngredients.stream()
+                .mapToInt(name -> ingredientId(name.toLowerCase(Locale.ROOT)))
+                .distinct()
+                .toArray();
+    }
+
+    // load candidate meals (one query) -> meals with an excluded ingredient are skipped
+    public void load(MealRepository repository, Set<String> excludedIngredients) throws SQLException {
+        Set<String> excluded = new HashSet<>();
+        for (String name : excludedIngredients) {
+            excluded.add(name.toLowerCase(Locale.ROOT));
+        }
+        repository.forEachMeal(null, meal -> {
+            int[] ids = new int[meal.ingredients.size()];
+            int count = 0;
+            for (String ingredient : meal.ingredients) {
+                String key = ingredient.toLowerCase(Locale.ROOT);
+                if (excluded.contains(key)) {
+                    return;
+                }
+                ids[count++] = ingredientId(key);
+            }
+            addMeal(meal.category, meal.id, meal.name, ids, count);
+        });
+    }
+
+    // add candidate meal directly (ingredient names are case insensitive)
+    public void addMeal(Category category, int mealId, String name, String... mealIngredients) {
+        int[] ids = new int[mealIngredients.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ingredientId(mealIngredients[i].toLowerCase(Locale.ROOT));
+        }
+        addMeal(category, mealId, name, ids, ids.length);
+    }
+
+    private void addMeal(Category category, int mealId, String name, int[] ids, int count) {
+        candidates[category.ordinal()].add(mealId, name, Arrays.stream(ids, 0, count).distinct().toArray());
+    }
+
+    private int ingredientId(String name) {
+        return ingredientIds.intern(name);
+    }
+
+    public int getCandidateCount() {
+        int count = 0;
+        for (Candidates c : candidates) {
+            count += c.size;
+        }
+        return count;
+    }
+
+    // best plan found within the time budget -> null if no plan satisfies the constraints
+    // workers > 1 : parallel search on the fork-join pool, different seeds give different plans
+    // candidates are read only once loaded -> generate() can run from several threads at the same time
+    public Result generate(long budgetMillis, int workers, long seed) {
+        Search search = new Search(System.nanoTime() + budgetMillis * 1_000_000L);
+        IntStream streams = IntStream.range(0, Math.max(1, workers));
+        int[] best = (workers > 1 ? streams.parallel() : streams)
+                .mapToObj(worker -> search(search, new Random(seed * 31 + worker * 7919L + 17)))
+                .filter(plan -> plan != null)
+                .min((a, b) -> Integer.compare(distinctIngredients(a), distinctIngredients(b)))
+                .orElse(null);
+        if (best == null) {
+            return null;
+        }
+        int[] mealIds = new int[SLOTS];
+        String[] names = new String[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            Candidates c = candidates[slot % CATEGORIES];
+            mealIds[slot] = c.mealIds[best[slot]];
+            names[slot] = c.names[best[slot]];
+        }
+        return new Result(mealIds, names, distinctIngredients(best), getCandidateCount(), search.constructions.get());
+    }
+
+    // one worker : restart until deadline (at least one complete attempt), return its best plan (candidate index by slot)
+    private int[] search(Search search, Random random) {
+        int[] best = null;
+        int bestLocal = Integer.MAX_VALUE;
+        int[] order = IntStream.range(0, SLOTS).toArray();
+        do {
+            search.constructions.incrementAndGet();
+            int[] plan = construct(search, random, order);
+            if (plan != null) {
+                improve(plan, search.deadline);
+                int cost = distinctIngredients(plan);
+                if (cost < bestLocal) {
+                    bestLocal = cost;
+                    best = plan;
+                    search.bestCost.accumulateAndGet(cost, Math::min);
+                }
+            }
+            shuffle(order, random);
+        } while (System.nanoTime() < search.deadline);
+        return best;
+    }
+
+    // greedy : fill slots in the given order with the cheapest allowed meal, random tie break
+    private int[] construct(Search search, Random random, int[] order) {
+        int[] plan = new int[SLOTS];
+        Arrays.fill(plan, -1);
+        int[] counts = new int[ingredientIds.capacity()];
+        int distinct = 0;
+        for (int slot : order) {
+            int choice = cheapest(plan, counts, slot, random);
+            if (choice < 0) {
+                return null; // not enough meals for the repeat window
+            }
+            plan[slot] = choice;
+            for (int ingredient : candidates[slot % CATEGORIES].ingredients[choice]) {
+                if (counts[ingredient]++ == 0) {
+                    distinct++;
+                }
+            }
+            if (distinct > search.bestCost.get()) {
+                return null; // bound : already worse than the best plan
+            }
+        }
+        return missingRequired(counts) == 0 ? plan : null;
+    }
+
+    // local search : replace one meal at a time while the week gets cheaper
+    private void improve(int[] plan, long deadline) {
+        int[] counts = new int[ingredientIds.capacity()];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            for (int ingredient : candidates[slot % CATEGORIES].ingredients[plan[slot]]) {
+                counts[ingredient]++;
+            }
+        }
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+            for (int slot = 0; slot < SLOTS; slot++) {
+                int[] current = candidates[slot % CATEGORIES].ingredients[plan[slot]];
+                for (int ingredient : current) {
+                    counts[ingredient]--;
+                }
+                int currentScore = score(current, counts);
+                int previous = plan[slot];
+                plan[slot] = -1;
+                int choice = cheapest(plan, counts, slot, null);
+                if (choice >= 0 && score(candidates[slot % CATEGORIES].ingredients[choice], counts) < currentScore) {
+                    plan[slot] = choice;
+                    improved = true;
+                } else {
+                    plan[slot] = previous;
+                }
+                for (int ingredient : candidates[slot % CATEGORIES].ingredients[plan[slot]]) {
+                    counts[ingredient]++;
+                }
+            }
+        }
+    }
+
+    // allowed meal with the lowest score for the slot (random tie break if random != null), -1 if none
+    private int cheapest(int[] plan, int[] counts, int slot, Random random) {
+        Candidates c = candidates[slot % CATEGORIES];
+        int bestIndex = -1;
+        int bestScore = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int i = 0; i < c.size; i++) {
+            int score = score(c.ingredients[i], counts);
+            if (score > bestScore || !isAllowed(plan, slot, i)) {
+                continue;
+            }
+            if (score < bestScore) {
+                bestScore = score;
+                bestIndex = i;
+                ties = 1;
+            } else if (random != null && random.nextInt(++ties) == 0) {
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    // new distinct ingredients, minus bonus for each missing required ingredient it brings
+    private int score(int[] mealIngredients, int[] counts) {
+        int score = 0;
+        for (int ingredient : mealIngredients) {
+            if (counts[ingredient] == 0) {
+                score += isRequired(ingredient) ? 1 - REQUIRED_BONUS : 1;
+            }
+        }
+        return score;
+    }
+
+    // same meal not planned for the same category within repeatWindow days
+    private boolean isAllowed(int[] plan, int slot, int candidate) {
+        int day = slot / CATEGORIES;
+        int category = slot % CATEGORIES;
+        int from = Math.max(0, day - repeatWindow + 1);
+        int to = Math.min(DAYS - 1, day + repeatWindow - 1);
+        for (int d = from; d <= to; d++) {
+            if (d != day && plan[d * CATEGORIES + category] == candidate) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRequired(int ingredient) {
+        for (int r : required) {
+            if (r == ingredient) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int missingRequired(int[] counts) {
+        int missing = 0;
+        for (int r : required) {
+            if (counts[r] == 0) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    private int distinctIngredients(int[] plan) {
+        boolean[] seen = new boolean[ingredientIds.capacity()];
+        int distinct = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            for (int ingredient : candidates[slot % CATEGORIES].ingredients[plan[slot]]) {
+                if (!seen[ingredient]) {
+                    seen[ingredient] = true;
+                    distinct++;
+                }
+            }
+        }
+        return distinct;
+    }
+
+    private static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+}
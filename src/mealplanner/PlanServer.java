@@ -0,0 +1,420 @@
+package mealplanner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// server mode : JSON endpoints on the JDK HttpServer (localhost only), one virtual thread per exchange
+// no state is kept between requests : each repository call takes its own pooled connection, every write is one
+// transaction (addMeals, savePlan) and writes of the same household run one after the other (see the repository)
+//
+// POST /meals                               {"category": "lunch", "meal": "salad", "ingredients": ["lettuce", "tomato 2"]}
+// GET  /meals?category=lunch                meals with their ingredients, ordered by meal_id, &offset=N&limit=N
+// GET  /search?q=chicken, -nuts, name:cu    same query as SEARCH, &limit=N
+// PUT  /plan?household=1                    {"breakfast": [7 meal names], "lunch": [...], "dinner": [...]}
+//                                           kept in the history as the current week, or &week=yyyy-mm-dd
+// GET  /plan?household=1
+// GET  /shopping-list?household=1           &format=json (default), csv or txt : same content as SAVE
+//                                           &from=yyyy-mm-dd&to=yyyy-mm-dd : plan history of the range, like RANGE
+// GET  /stats                               same table as STATS
+public class PlanServer {
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final MealRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private MealIndex mealIndex; // built by the first search, guarded by this
+
+    static {
+        // headers & body are written separately -> without TCP_NODELAY every small response waits for a delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // handler of one method & path -> writes the response, IllegalArgumentException is a bad request (400)
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException;
+    }
+
+    public PlanServer(MealRepository repository, int port, int fallbackThreads) throws IOException {
+        this.repository = repository;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = Utils.newTaskExecutor(fallbackThreads);
+        server.setExecutor(executor);
+        route("/meals", Map.of("GET", this::getMeals, "POST", this::addMeal));
+        route("/search", Map.of("GET", this::search));
+        route("/plan", Map.of("GET", this::getPlan, "PUT", this::savePlan));
+        route("/shopping-list", Map.of("GET", this::getShoppingList));
+        route("/stats", Map.of("GET", this::getStats));
+        server.createContext("/", exchange -> {
+            try {
+                sendError(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // port actually bound (port 0 -> any free port)
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // stop accepting, let exchanges in progress finish (at most delaySeconds)
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // errors become {"error": "..."} : 400 bad request, 404 unknown path, 405 other method, 500 repository failure
+    private void route(String path, Map<String, Handler> handlers) {
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            String method = exchange.getRequestMethod();
+            try {
+                Handler handler = handlers.get(method);
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    sendError(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+                } else if (handler == null) {
+                    exchange.getResponseHeaders().set("Allow", String.join(", ", handlers.keySet()));
+                    sendError(exchange, 405, "Use " + String.join(" or ", handlers.keySet()) + " for " + path);
+                } else {
+                    handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (SQLException | RuntimeException e) {
+                System.err.printf("%s %s failed: %s%n", method, exchange.getRequestURI(), e.getMessage());
+                sendError(exchange, 500, e.getMessage());
+            } finally {
+                exchange.close();
+                if (Metrics.ENABLED) {
+                    Metrics.timer("Http", method + " " + path).record(System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    // POST /meals : one meal in the IMPORT JSON format -> 201 {"id": meal_id}
+    private void addMeal(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        Meal meal = MealImporter.parseJsonLine(readBody(exchange));
+        if (meal == null) {
+            throw new IllegalArgumentException("Wrong format. Expected {\"category\": \"lunch\", \"meal\": \"name\", " +
+                    "\"ingredients\": [\"ingredient amount\", ...]}");
+        }
+        meal.id = repository.addMeals(List.of(meal))[0];
+        synchronized (this) {
+            if (mealIndex != null) {
+                mealIndex.add(meal);
+            }
+        }
+        send(exchange, 201, JSON, "{\"id\": " + meal.id + "}\n");
+    }
+
+    // GET /meals?category=... : streamed while the meals are read (chunked), no size limit unless &limit=N is given
+    private void getMeals(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        Category category = getCategory(query.get("category"));
+        int offset = getNumber(query, "offset", 0);
+        int limit = getNumber(query, "limit", Integer.MAX_VALUE);
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Use offset=N and limit=N (N >= 0)");
+        }
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            writer.write('[');
+            boolean[] first = {true};
+            try {
+                repository.forEachMeal(category, offset, limit, meal -> {
+                    try {
+                        writer.write(first[0] ? "\n  " : ",\n  ");
+                        first[0] = false;
+                        writeMeal(writer, meal);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.write(first[0] ? "]\n" : "\n]\n");
+        }
+    }
+
+    // {"id": 1, "category": "lunch", "name": "salad", "ingredients": [{"ingredient": "tomato", "quantity": 2, "unit": "pc"}]}
+    private static void writeMeal(Writer writer, Meal meal) throws IOException {
+        writer.write("{\"id\": " + meal.id + ", \"category\": ");
+        Json.writeString(writer, meal.category.toString().toLowerCase());
+        writer.write(", \"name\": ");
+        Json.writeString(writer, meal.name);
+        writer.write(", \"ingredients\": [");
+        for (int i = 0; i < meal.ingredients.size(); i++) {
+            Amount amount = meal.getAmount(i);
+            writer.write(i == 0 ? "{\"ingredient\": " : ", {\"ingredient\": ");
+            Json.writeString(writer, meal.ingredients.get(i));
+            writer.write(", \"quantity\": " + amount.displayValue() + ", \"unit\": ");
+            Json.writeString(writer, amount.displayUnit().symbol);
+            writer.write('}');
+        }
+        writer.write("]}");
+    }
+
+    // GET /search?q=...&limit=N -> {"count": N, "meals": [{"id": 1, "name": "...", "category": "lunch"}]}
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        MealIndex.Query search = MealIndex.Query.parse(query.getOrDefault("q", ""));
+        if (search.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to search. Use q=ingredient, -ingredient, name:prefix");
+        }
+        int limit = getNumber(query, "limit", Integer.parseInt(Utils.getSetting("search.limit", "20")));
+        MealIndex.Result result = getMealIndex().search(search, limit);
+        StringWriter writer = new StringWriter();
+        writer.write("{\"count\": " + result.count + ", \"meals\": [");
+        for (int i = 0; i < result.mealIds.length; i++) {
+            writer.write((i == 0 ? "{\"id\": " : ", {\"id\": ") + result.mealIds[i] + ", \"name\": ");
+            Json.writeString(writer, result.names[i]);
+            writer.write(", \"category\": ");
+            Json.writeString(writer, result.categories[i].toString().toLowerCase());
+            writer.write('}');
+        }
+        writer.write("]}\n");
+        send(exchange, 200, JSON, writer.toString());
+    }
+
+    // one pass over the catalog on first use, then kept up to date by POST /meals
+    private synchronized MealIndex getMealIndex() throws SQLException {
+        if (mealIndex == null) {
+            mealIndex = MealIndex.build(repository);
+        }
+        return mealIndex;
+    }
+
+    // PUT /plan?household=N : replace the week plan, its shopping list and its week of history in one transaction
+    private void savePlan(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        int householdId = getHousehold(query);
+        Map<String, Object> body = Json.parseObject(readBody(exchange));
+        Category[] categories = Category.values();
+        String[][] week = new String[Main.daysOfWeek.length][categories.length];
+        int[] mealIds = new int[week.length * categories.length];
+        for (Category category : categories) {
+            String key = category.toString().toLowerCase();
+            if (!(body.get(key) instanceof List<?> names) || names.size() != week.length) {
+                throw new IllegalArgumentException(String.format("Expected \"%s\": [%d meal names, Monday first]",
+                        key, week.length));
+            }
+            Map<String, Integer> meals = repository.getMealIdsByCategory(category);
+            for (int day = 0; day < week.length; day++) {
+                String name = (String) names.get(day);
+                Integer mealId = meals.get(name);
+                if (mealId == null) {
+                    throw new IllegalArgumentException(String.format("Unknown %s \"%s\" for %s", key, name,
+                            Main.daysOfWeek[day]));
+                }
+                week[day][category.ordinal()] = name;
+                mealIds[day * categories.length + category.ordinal()] = mealId;
+            }
+        }
+        if (body.size() != categories.length) {
+            throw new IllegalArgumentException("Expected only breakfast, lunch and dinner");
+        }
+        LocalDate weekStart = Utils.weekStart(query.containsKey("week") ? getDate(query, "week") : Utils.today());
+        repository.savePlan(householdId, mealIds, weekStart);
+        send(exchange, 200, JSON, planJson(householdId, week));
+    }
+
+    // GET /plan?household=N -> 404 if the household has no plan
+    private void getPlan(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        int householdId = getHousehold(query);
+        String[][] week = repository.getWeekPlan(householdId);
+        for (String[] day : week) {
+            for (String meal : day) {
+                if (meal != null) {
+                    send(exchange, 200, JSON, planJson(householdId, week));
+                    return;
+                }
+            }
+        }
+        sendError(exchange, 404, "No plan for household " + householdId);
+    }
+
+    // {"household": 1, "days": [{"day": "Monday", "breakfast": "...", "lunch": "...", "dinner": "..."}, ...]}
+    private static String planJson(int householdId, String[][] week) throws IOException {
+        StringWriter writer = new StringWriter(1024);
+        writer.write("{\"household\": " + householdId + ", \"days\": [");
+        for (int day = 0; day < week.length; day++) {
+            writer.write(day == 0 ? "\n  {\"day\": " : ",\n  {\"day\": ");
+            Json.writeString(writer, Main.daysOfWeek[day]);
+            for (Category category : Category.values()) {
+                writer.write(", \"" + category.toString().toLowerCase() + "\": ");
+                String meal = week[day][category.ordinal()];
+                if (meal == null) {
+                    writer.write("null");
+                } else {
+                    Json.writeString(writer, meal);
+                }
+            }
+            writer.write('}');
+        }
+        writer.write("\n]}\n");
+        return writer.toString();
+    }
+
+    // GET /shopping-list?household=N&format=json|csv|txt
+    private void getShoppingList(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        int householdId = getHousehold(query);
+        ShoppingListExporter.Format format;
+        try {
+            format = ShoppingListExporter.Format.valueOf(query.getOrDefault("format", "json").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format. Use json, csv or txt");
+        }
+        StringWriter writer = new StringWriter(1024);
+        if (query.containsKey("from") || query.containsKey("to")) {
+            LocalDate first = getDate(query, "from");
+            LocalDate last = getDate(query, "to");
+            if (first.isAfter(last)) {
+                throw new IllegalArgumentException("from is after to");
+            }
+            ShoppingListExporter.write(consumer -> repository.forEachRangeItem(householdId, first, last, consumer),
+                    writer, format);
+        } else {
+            ShoppingListExporter.write(repository, householdId, writer, format);
+        }
+        send(exchange, 200, switch (format) {
+            case JSON -> JSON;
+            case CSV -> "text/csv; charset=utf-8";
+            case TXT -> "text/plain; charset=utf-8";
+        }, writer.toString());
+    }
+
+    // GET /stats : latency by endpoint (group Http), statements & caches
+    private void getStats(HttpExchange exchange, Map<String, String> query) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+            Metrics.print(out);
+        }
+        send(exchange, 200, "text/plain; charset=utf-8", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Category getCategory(String value) {
+        String upper = value == null ? "" : value.toUpperCase(Locale.ROOT);
+        if (!Utils.isValidEnumValue(Category.class, upper)) {
+            throw new IllegalArgumentException("Wrong meal category! Use category=breakfast, lunch or dinner");
+        }
+        return Category.valueOf(upper);
+    }
+
+    private static int getHousehold(Map<String, String> query) {
+        int householdId = getNumber(query, "household", -1);
+        if (householdId < 0) {
+            throw new IllegalArgumentException("Use household=N (N >= 0)");
+        }
+        return householdId;
+    }
+
+    private static LocalDate getDate(Map<String, String> query, String name) {
+        try {
+            return LocalDate.parse(query.getOrDefault(name, ""));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Use " + name + "=yyyy-mm-dd");
+        }
+    }
+
+    // number parameter, defaultValue if missing
+    private static int getNumber(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong number for " + name + ": " + value);
+        }
+    }
+
+    // a=1&b=x%20y -> {a=1, b=x y}, last value wins
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // nothing is sent if the response has already started (error while streaming) : the client sees a cut response
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            StringWriter writer = new StringWriter();
+            writer.write("{\"error\": ");
+            Json.writeString(writer, message == null ? "Internal error" : message);
+            writer.write("}\n");
+            send(exchange, status, JSON, writer.toString());
+        } catch (IOException e) {
+            // client gone, nothing to report to
+        }
+    }
+}
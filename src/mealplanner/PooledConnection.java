@@ -0,0 +1,189 @@
+package mealplanner;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class PooledConnection implements AutoCloseable {
+
+    private static final int MAX_CACHED_STATEMENTS = 64;
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    // timer of each cached statement, empty when metrics are off
+    private final Map<PreparedStatement, Metrics.Timer> timers = new IdentityHashMap<>();
+    // prepared statements by SQL, least recently used one is closed when the cache is full
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > MAX_CACHED_STATEMENTS) {
+                timers.remove(eldest.getValue());
+                closeStatement(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    public Connection connection() {
+        return connection;
+    }
+
+    // cached prepared statement -> must not be closed by the caller, executed through executeQuery, executeUpdate ...
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            if (statement != null) {
+                timers.remove(statement);
+            }
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            if (Metrics.ENABLED) {
+                timers.put(statement, Metrics.timer("Statement", label(sql)));
+            }
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    // execute* of a statement of prepare : one round trip, timed with the rows read (counted up to close) or written
+    public ResultSet executeQuery(PreparedStatement statement) throws SQLException {
+        Metrics.Timer timer = timers.get(statement);
+        if (timer == null) {
+            return statement.executeQuery();
+        }
+        long start = System.nanoTime();
+        ResultSet resultSet = statement.executeQuery();
+        timer.record(System.nanoTime() - start);
+        return new CountingResultSet(resultSet, timer);
+    }
+
+    public int executeUpdate(PreparedStatement statement) throws SQLException {
+        Metrics.Timer timer = timers.get(statement);
+        if (timer == null) {
+            return statement.executeUpdate();
+        }
+        long start = System.nanoTime();
+        int rows = statement.executeUpdate();
+        timer.record(System.nanoTime() - start);
+        timer.addRows(rows);
+        return rows;
+    }
+
+    public int[] executeBatch(PreparedStatement statement) throws SQLException {
+        Metrics.Timer timer = timers.get(statement);
+        if (timer == null) {
+            return statement.executeBatch();
+        }
+        long start = System.nanoTime();
+        int[] batch = statement.executeBatch();
+        timer.record(System.nanoTime() - start);
+        for (int rows : batch) {
+            timer.addRows(rows);
+        }
+        return batch;
+    }
+
+    // same for SQL text run by a plain Statement (schema migrations)
+    public boolean execute(Statement statement, String sql) throws SQLException {
+        if (!Metrics.ENABLED) {
+            return statement.execute(sql);
+        }
+        Metrics.Timer timer = Metrics.timer("Statement", label(sql));
+        long start = System.nanoTime();
+        boolean hasResultSet = statement.execute(sql);
+        timer.record(System.nanoTime() - start);
+        if (!hasResultSet) {
+            timer.addRows(statement.getUpdateCount());
+        }
+        return hasResultSet;
+    }
+
+    public ResultSet executeQuery(Statement statement, String sql) throws SQLException {
+        if (!Metrics.ENABLED) {
+            return statement.executeQuery(sql);
+        }
+        Metrics.Timer timer = Metrics.timer("Statement", label(sql));
+        long start = System.nanoTime();
+        ResultSet resultSet = statement.executeQuery(sql);
+        timer.record(System.nanoTime() - start);
+        return new CountingResultSet(resultSet, timer);
+    }
+
+    // timer name : statement type + first table of the SQL text ("INSERT plan", "SELECT meals" ...)
+    static String label(String sql) {
+        String[] words = sql.trim().split("[\\s(),;]+");
+        String type = words.length == 0 ? "" : words[0].toUpperCase(Locale.ROOT);
+        String keyword = switch (type) {
+            case "INSERT" -> "INTO";
+            case "UPDATE" -> null;
+            default -> "FROM";
+        };
+        for (int i = 1; i < words.length; i++) {
+            if (keyword == null || words[i - 1].equalsIgnoreCase(keyword)) {
+                return type + " " + words[i];
+            }
+        }
+        return type;
+    }
+
+    // run work in one transaction -> commit or rollback
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run(this);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // give back connection to the pool
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closeQuietly() {
+        for (PreparedStatement statement : statements.values()) {
+            closeStatement(statement);
+        }
+        statements.clear();
+        timers.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // connection is dropped anyway
+        }
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // statement is dropped anyway
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+}
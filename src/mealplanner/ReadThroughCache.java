@@ -0,0 +1,81 @@
+package mealplanner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// read-through map for a few entries that are dropped on change, never evicted (no size limit)
+public class ReadThroughCache<K, V> {
+
+    private final String name;
+    private final Map<K, V> entries = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation; // changed by invalidate & clear, guarded by entries
+
+    public ReadThroughCache(String name) {
+        this.name = name;
+    }
+
+    // cached value or value from loader (loader runs outside the lock)
+    // a value loaded while invalidate or clear ran may be older than the change -> returned but not cached
+    public <E extends Exception> V get(K key, Loader<K, V, E> loader) throws E {
+        long loadGeneration;
+        synchronized (entries) {
+            V value = entries.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+        V value = loader.load(key);
+        if (value != null) {
+            synchronized (entries) {
+                if (generation == loadGeneration) {
+                    entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: size %d, hits %d, misses %d", name, size(), getHits(), getMisses());
+    }
+
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        V load(K key) throws E;
+    }
+}
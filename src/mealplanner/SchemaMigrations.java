@@ -0,0 +1,225 @@
+package mealplanner;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// versioned schema : each migration runs once, in its own transaction, and is recorded in schema_version
+// startup with an up to date schema = 2 queries, no DDL
+// databases created before schema_version : migrations are written to be harmless on tables that already exist
+public class SchemaMigrations {
+
+    // any constant shared by all processes migrating the same database
+    private static final long LOCK_KEY = 0x6D65616C73L;
+
+    private static final Migration[] MIGRATIONS = {
+            new Migration(1, "tables",
+                    "CREATE TABLE IF NOT EXISTS meals (" +                                  // TABLE meals
+                            "meal_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +       // meal_id PRIMARY KEY
+                            "category VARCHAR(10) NOT NULL," +                                  // category
+                            "meal VARCHAR(255) NOT NULL" +                                      // meal(name)
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS ingredients (" +                            // TABLE ingredients
+                            "ingredient_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY," + // ingredient_id PRIMARY KEY
+                            "ingredient VARCHAR(255) NOT NULL," +                               // ingredient(name)
+                            "meal_id INTEGER NOT NULL REFERENCES meals(meal_id)" +              // meal_id FOREIGN KEY (TABLE meals)
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS plan (" +                                   // TABLE plan
+                            "plan_id VARCHAR(10)," +                                            // plan_id
+                            "category VARCHAR(10) NOT NULL," +                                  // category
+                            "meal_id INTEGER NOT NULL REFERENCES meals(meal_id)" +              // meal_id FOREIGN KEY (TABLE meals)
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS shoppingList (" +                           // TABLE shoppingList
+                            "ingredient VARCHAR(255) PRIMARY KEY," +                            // ingredient(name) PRIMARY KEY
+                            "quantity INT" +                                                    // quantity
+                            ")"),
+
+            // existing rows belong to household 0
+            new Migration(2, "households",
+                    "ALTER TABLE plan ADD COLUMN IF NOT EXISTS household_id INTEGER NOT NULL DEFAULT 0",
+                    "DO $$ BEGIN " +
+                            "IF NOT EXISTS (SELECT 1 FROM information_schema.columns " +
+                            "WHERE table_name = 'shoppinglist' AND column_name = 'household_id') THEN " +
+                            "ALTER TABLE shoppingList ADD COLUMN household_id INTEGER NOT NULL DEFAULT 0; " +
+                            "ALTER TABLE shoppingList DROP CONSTRAINT shoppinglist_pkey; " +
+                            "ALTER TABLE shoppingList ADD PRIMARY KEY (household_id, ingredient); " +
+                            "END IF; END $$"),
+
+            // names move to ingredient_names, shoppingList is rebuilt from plan with name_id
+            new Migration(3, "ingredient dictionary",
+                    "CREATE TABLE IF NOT EXISTS ingredient_names (" +                       // TABLE ingredient_names
+                            "name_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY," +       // name_id PRIMARY KEY
+                            "name VARCHAR(255) NOT NULL UNIQUE" +                               // name
+                            ")",
+                    "DO $$ BEGIN " +
+                            "IF EXISTS (SELECT 1 FROM information_schema.columns " +
+                            "WHERE table_name = 'ingredients' AND column_name = 'ingredient') THEN " +
+                            "INSERT INTO ingredient_names (name) SELECT DISTINCT ingredient FROM ingredients " +
+                            "ON CONFLICT (name) DO NOTHING; " +
+                            "ALTER TABLE ingredients ADD COLUMN name_id INTEGER REFERENCES ingredient_names(name_id); " +
+                            "UPDATE ingredients i SET name_id = n.name_id FROM ingredient_names n WHERE n.name = i.ingredient; " +
+                            "ALTER TABLE ingredients ALTER COLUMN name_id SET NOT NULL; " +
+                            "ALTER TABLE ingredients DROP COLUMN ingredient; " +
+                            "DROP TABLE shoppingList; " +
+                            "END IF; END $$",
+                    "CREATE TABLE IF NOT EXISTS shoppingList (" +                           // TABLE shoppingList
+                            "household_id INTEGER NOT NULL DEFAULT 0," +                        // household_id
+                            "name_id INTEGER NOT NULL REFERENCES ingredient_names(name_id)," +  // name_id FOREIGN KEY (TABLE ingredient_names)
+                            "quantity INT," +                                                   // quantity
+                            "PRIMARY KEY (household_id, name_id)" +                             // PRIMARY KEY
+                            ")",
+                    "INSERT INTO shoppingList (household_id, name_id, quantity) " +
+                            "SELECT p.household_id, i.name_id, COUNT(*) FROM plan p " +
+                            "JOIN ingredients i ON i.meal_id = p.meal_id " +
+                            "WHERE NOT EXISTS (SELECT 1 FROM shoppingList) " +
+                            "GROUP BY p.household_id, i.name_id"),
+
+            // indexes for the hot filters : meals of a meal, meals of a category, plan of a household
+            // one row per household, day & category -> duplicates left by old versions are dropped
+            new Migration(4, "indexes and constraints",
+                    "CREATE INDEX IF NOT EXISTS ingredients_meal_id_idx ON ingredients (meal_id)",
+                    "CREATE INDEX IF NOT EXISTS meals_category_idx ON meals (category)",
+                    "ALTER TABLE meals ADD CONSTRAINT meals_category_check " +
+                            "CHECK (category IN ('BREAKFAST', 'LUNCH', 'DINNER'))",
+                    "DELETE FROM plan WHERE plan_id IS NULL",
+                    "DELETE FROM plan a USING plan b WHERE a.ctid < b.ctid AND a.household_id = b.household_id " +
+                            "AND a.plan_id = b.plan_id AND a.category = b.category",
+                    "ALTER TABLE plan ALTER COLUMN plan_id SET NOT NULL",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS plan_household_day_category_idx " +
+                            "ON plan (household_id, plan_id, category)",
+                    "DELETE FROM shoppingList",
+                    "INSERT INTO shoppingList (household_id, name_id, quantity) " +
+                            "SELECT p.household_id, i.name_id, COUNT(*) FROM plan p " +
+                            "JOIN ingredients i ON i.meal_id = p.meal_id " +
+                            "GROUP BY p.household_id, i.name_id"),
+
+            // shoppingList.quantity = needed - pantry (can be <= 0, only rows > 0 are to buy)
+            new Migration(5, "pantry",
+                    "CREATE TABLE IF NOT EXISTS pantry (" +                                 // TABLE pantry
+                            "household_id INTEGER NOT NULL," +                                  // household_id
+                            "name_id INTEGER NOT NULL REFERENCES ingredient_names(name_id)," +  // name_id FOREIGN KEY (TABLE ingredient_names)
+                            "quantity INT NOT NULL," +                                          // quantity
+                            "PRIMARY KEY (household_id, name_id)" +                             // PRIMARY KEY
+                            ")"),
+
+            // amount = thousandths of the base unit (pc, g, ml), existing rows = one piece (former counts x 1000)
+            // shopping list & pantry have one row by ingredient and unit
+            new Migration(6, "amounts",
+                    "ALTER TABLE ingredients ADD COLUMN amount BIGINT NOT NULL DEFAULT 1000, " +
+                            "ADD COLUMN unit VARCHAR(2) NOT NULL DEFAULT 'pc' CHECK (unit IN ('pc', 'g', 'ml'))",
+                    "ALTER TABLE shoppingList ADD COLUMN unit VARCHAR(2) NOT NULL DEFAULT 'pc', " +
+                            "ALTER COLUMN quantity TYPE BIGINT USING quantity * 1000, " +
+                            "DROP CONSTRAINT shoppinglist_pkey, ADD PRIMARY KEY (household_id, name_id, unit)",
+                    "ALTER TABLE pantry ADD COLUMN unit VARCHAR(2) NOT NULL DEFAULT 'pc', " +
+                            "ALTER COLUMN quantity TYPE BIGINT USING quantity * 1000, " +
+                            "DROP CONSTRAINT pantry_pkey, ADD PRIMARY KEY (household_id, name_id, unit)"),
+
+            // dated plans kept by week (plan only holds the current one), primary key = index by household & week
+            // current plans become the history of the current week
+            new Migration(7, "plan history",
+                    "CREATE TABLE plan_history (" +                                         // TABLE plan_history
+                            "household_id INTEGER NOT NULL," +                                  // household_id
+                            "week_start DATE NOT NULL CHECK (EXTRACT(ISODOW FROM week_start) = 1)," + // Monday of the week
+                            "day SMALLINT NOT NULL CHECK (day BETWEEN 0 AND 6)," +              // days after week_start
+                            "category VARCHAR(10) NOT NULL," +                                  // category
+                            "meal_id INTEGER NOT NULL REFERENCES meals(meal_id)," +             // meal_id FOREIGN KEY (TABLE meals)
+                            "PRIMARY KEY (household_id, week_start, day, category)" +           // PRIMARY KEY
+                            ")",
+                    "INSERT INTO plan_history (household_id, week_start, day, category, meal_id) " +
+                            "SELECT household_id, date_trunc('week', CURRENT_DATE)::date, " +
+                            "array_position(ARRAY['Monday', 'Tuesday', 'Wednesday', 'Thursday', 'Friday', 'Saturday', " +
+                            "'Sunday']::varchar[], plan_id) - 1, category, meal_id FROM plan"),
+
+            // catalog_version.version + 1 by transaction writing meals or ingredients, renaming or deleting ingredient names
+            // (a new name is in no meal yet) -> snapshots compare the version they were read at
+            // the transaction level setting skips the UPDATE for the following statements of the same transaction
+            new Migration(8, "catalog version",
+                    "CREATE TABLE catalog_version (" +                                      // TABLE catalog_version
+                            "id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id)," +                 // one row
+                            "version BIGINT NOT NULL" +                                         // version
+                            ")",
+                    "INSERT INTO catalog_version (version) VALUES (1)",
+                    "CREATE OR REPLACE FUNCTION bump_catalog_version() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN " +
+                            "IF current_setting('mealplanner.catalog_txid', true) IS DISTINCT FROM txid_current()::text THEN " +
+                            "UPDATE catalog_version SET version = version + 1; " +
+                            "PERFORM set_config('mealplanner.catalog_txid', txid_current()::text, true); " +
+                            "END IF; RETURN NULL; END $$",
+                    "CREATE TRIGGER meals_catalog_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON meals " +
+                            "FOR EACH STATEMENT EXECUTE FUNCTION bump_catalog_version()",
+                    "CREATE TRIGGER ingredients_catalog_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON ingredients " +
+                            "FOR EACH STATEMENT EXECUTE FUNCTION bump_catalog_version()",
+                    "CREATE TRIGGER ingredient_names_catalog_version AFTER UPDATE OR DELETE OR TRUNCATE ON ingredient_names " +
+                            "FOR EACH STATEMENT EXECUTE FUNCTION bump_catalog_version()"),
+    };
+
+    private SchemaMigrations() {
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS[MIGRATIONS.length - 1].version;
+    }
+
+    // apply missing migrations -> return schema version
+    public static int migrate(ConnectionPool pool) throws SQLException {
+        try (PooledConnection pooled = pool.acquire()) {
+            if (currentVersion(pooled) >= latestVersion()) {
+                return latestVersion();
+            }
+            int version = 0;
+            for (Migration migration : MIGRATIONS) {
+                version = pooled.inTransaction(connection -> apply(connection, migration));
+            }
+            return version;
+        }
+    }
+
+    // applied version, 0 if schema_version does not exist
+    private static int currentVersion(PooledConnection connection) throws SQLException {
+        try (Statement statement = connection.connection().createStatement();
+             ResultSet resultSet = connection.executeQuery(statement, "SELECT to_regclass('schema_version') IS NOT NULL")) {
+            if (!resultSet.next() || !resultSet.getBoolean(1)) {
+                return 0;
+            }
+        }
+        try (Statement statement = connection.connection().createStatement();
+             ResultSet resultSet = connection.executeQuery(statement, "SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    // transaction level lock -> a second process waits, then sees the migration as applied
+    private static int apply(PooledConnection connection, Migration migration) throws SQLException {
+        try (Statement statement = connection.connection().createStatement()) {
+            connection.execute(statement, "SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+            connection.execute(statement, "CREATE TABLE IF NOT EXISTS schema_version (" + // TABLE schema_version
+                    "version INTEGER PRIMARY KEY," +                                    // version PRIMARY KEY
+                    "description VARCHAR(255) NOT NULL," +                              // description
+                    "applied_at TIMESTAMP NOT NULL DEFAULT now()" +                     // applied_at
+                    ")");
+            if (currentVersion(connection) >= migration.version) {
+                return migration.version;
+            }
+            for (String sql : migration.statements) {
+                connection.execute(statement, sql);
+            }
+        }
+        PreparedStatement record = connection.prepare("INSERT INTO schema_version (version, description) VALUES (?, ?)");
+        record.setInt(1, migration.version);
+        record.setString(2, migration.description);
+        connection.executeUpdate(record);
+        return migration.version;
+    }
+}
@@ -0,0 +1,182 @@
+package mealplanner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// write shopping list while it is read from the repository (constant memory)
+// the file is written next to the target under a temporary name, then renamed -> never half written
+public class ShoppingListExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        TXT,  // "name", "name xN" or "name 1.25 kg" per line (format of SAVE)
+        CSV,  // ingredient,quantity,unit
+        JSON; // [{"ingredient": "name", "quantity": N, "unit": "kg"}, ...]
+
+        // format from file extension, TXT if unknown
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".json")) {
+                return JSON;
+            }
+            return TXT;
+        }
+    }
+
+    private ShoppingListExporter() {
+    }
+
+    // items of a shopping list in display order (current list of a household, history of a date range ...)
+    public interface Items {
+        void forEach(Consumer<Ingredient> consumer) throws SQLException;
+    }
+
+    // current shopping list of the household -> return number of ingredients written
+    public static long export(MealRepository repository, int householdId, Path target, Format format)
+            throws IOException, SQLException {
+        return export(consumer -> repository.forEachShoppingListItem(householdId, consumer), target, format);
+    }
+
+    // return number of ingredients written
+    public static long export(Items items, Path target, Format format) throws IOException, SQLException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = null;
+        long count;
+        try {
+            FileChannel created = null;
+            while (created == null) {
+                temp = absolute.resolveSibling("." + absolute.getFileName() + "."
+                        + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+                try {
+                    created = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    temp = null;
+                }
+            }
+            try (FileChannel channel = created;
+                 Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                copyPermissions(absolute, temp);
+                count = write(items, writer, format);
+                writer.flush();
+                channel.force(false);
+            }
+            move(temp, absolute);
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return count;
+    }
+
+    // write current shopping list of the household to writer (not flushed) -> return number of ingredients written
+    public static long write(MealRepository repository, int householdId, Writer writer, Format format)
+            throws IOException, SQLException {
+        return write(consumer -> repository.forEachShoppingListItem(householdId, consumer), writer, format);
+    }
+
+    public static long write(Items items, Writer writer, Format format) throws IOException, SQLException {
+        long[] count = {0};
+        writeHeader(writer, format);
+        try {
+            items.forEach(ingredient -> {
+                try {
+                    writeItem(writer, format, ingredient, count[0]++ == 0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeFooter(writer, format, count[0] == 0);
+        return count[0];
+    }
+
+    // the temp file is created with the default mode (umask) like a new file of FileWriter, a replaced file keeps its mode
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from) || !Files.getFileStore(to).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeHeader(Writer writer, Format format) throws IOException {
+        switch (format) {
+            case CSV -> writer.write("ingredient,quantity,unit\n");
+            case JSON -> writer.write("[");
+            default -> {
+            }
+        }
+    }
+
+    private static void writeItem(Writer writer, Format format, Ingredient ingredient, boolean first) throws IOException {
+        switch (format) {
+            case TXT -> {
+                writer.write(ingredient.text());
+                writer.write('\n');
+            }
+            case CSV -> {
+                writeCsvField(writer, ingredient.name);
+                writer.write(',');
+                writer.write(ingredient.amount.displayValue());
+                writer.write(',');
+                writer.write(ingredient.amount.displayUnit().symbol);
+                writer.write('\n');
+            }
+            case JSON -> {
+                writer.write(first ? "\n  {\"ingredient\": " : ",\n  {\"ingredient\": ");
+                Json.writeString(writer, ingredient.name);
+                writer.write(", \"quantity\": ");
+                writer.write(ingredient.amount.displayValue());
+                writer.write(", \"unit\": ");
+                Json.writeString(writer, ingredient.amount.displayUnit().symbol);
+                writer.write('}');
+            }
+        }
+    }
+
+    private static void writeFooter(Writer writer, Format format, boolean empty) throws IOException {
+        if (format == Format.JSON) {
+            writer.write(empty ? "]\n" : "\n]\n");
+        }
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
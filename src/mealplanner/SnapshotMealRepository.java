@@ -0,0 +1,154 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// catalog reads from a memory-mapped snapshot while it matches the database, everything else from the repository
+// the snapshot is dropped when meals are added (ADD, IMPORT) -> reads go back to the repository
+// the version is checked only here, at startup : a catalog edited in the database by another process afterwards
+// is not seen until restart
+public class SnapshotMealRepository implements MealRepository {
+
+    private final CatalogSnapshot snapshot;
+    private final MealRepository repository;
+    private volatile boolean current;
+
+    // version check : the database has the catalog version the snapshot was read at
+    public SnapshotMealRepository(CatalogSnapshot snapshot, MealRepository repository) throws SQLException {
+        this.snapshot = snapshot;
+        this.repository = repository;
+        this.current = snapshot.getCatalogVersion() == repository.getCatalogVersion();
+    }
+
+    // false -> the snapshot is not used
+    public boolean isCurrent() {
+        return current;
+    }
+
+    @Override
+    public int[] addMeals(List<Meal> meals) throws SQLException {
+        current = false;
+        return repository.addMeals(meals);
+    }
+
+    @Override
+    public boolean hasMeals(Category category) throws SQLException {
+        return current ? snapshot.hasMeals(category) : repository.hasMeals(category);
+    }
+
+    @Override
+    public int forEachMeal(Category category, Consumer<Meal> consumer) throws SQLException {
+        return current ? snapshot.forEachMeal(category, consumer) : repository.forEachMeal(category, consumer);
+    }
+
+    @Override
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) throws SQLException {
+        return current ? snapshot.forEachMeal(category, offset, limit, consumer)
+                : repository.forEachMeal(category, offset, limit, consumer);
+    }
+
+    @Override
+    public Map<String, Integer> getMealIdsByCategory(Category category) throws SQLException {
+        return current ? snapshot.getMealIdsByCategory(category) : repository.getMealIdsByCategory(category);
+    }
+
+    @Override
+    public List<String> getIngredientsByMealId(int mealId) throws SQLException {
+        return current ? snapshot.getIngredientsByMealId(mealId) : repository.getIngredientsByMealId(mealId);
+    }
+
+    @Override
+    public int getMaxMealId() throws SQLException {
+        return current ? snapshot.getMaxMealId() : repository.getMaxMealId();
+    }
+
+    @Override
+    public long getCatalogVersion() throws SQLException {
+        return repository.getCatalogVersion();
+    }
+
+    @Override
+    public void clearPlan(int householdId) throws SQLException {
+        repository.clearPlan(householdId);
+    }
+
+    @Override
+    public void addPlan(int householdId, String day, Category category, int mealId) throws SQLException {
+        repository.addPlan(householdId, day, category, mealId);
+    }
+
+    @Override
+    public void addPlans(int householdId, int[] slots, int[] mealIds) throws SQLException {
+        repository.addPlans(householdId, slots, mealIds);
+    }
+
+    @Override
+    public void savePlan(int householdId, int[] mealIds, LocalDate weekStart) throws SQLException {
+        repository.savePlan(householdId, mealIds, weekStart);
+    }
+
+    @Override
+    public boolean hasPlan(int householdId) throws SQLException {
+        return repository.hasPlan(householdId);
+    }
+
+    @Override
+    public String[][] getWeekPlan(int householdId) throws SQLException {
+        return repository.getWeekPlan(householdId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId) throws SQLException {
+        return repository.replanSlot(householdId, day, category, mealId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart)
+            throws SQLException {
+        return repository.replanSlot(householdId, day, category, mealId, weekStart);
+    }
+
+    @Override
+    public void setPantryItem(int householdId, String ingredient, Amount amount) throws SQLException {
+        repository.setPantryItem(householdId, ingredient, amount);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId) throws SQLException {
+        repository.buildShoppingList(householdId);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId, LocalDate weekStart) throws SQLException {
+        repository.buildShoppingList(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) throws SQLException {
+        repository.forEachShoppingListItem(householdId, consumer);
+    }
+
+    @Override
+    public void recordWeek(int householdId, LocalDate weekStart) throws SQLException {
+        repository.recordWeek(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer)
+            throws SQLException {
+        repository.forEachRangeItem(householdId, first, last, consumer);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        repository.flush();
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+    }
+}
@@ -1,19 +1,191 @@
 package mealplanner;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Utils {
 
-    private static final Pattern PATTERN = Pattern.compile("^[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*(\\s[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*)*$", Pattern.CASE_INSENSITIVE);
-
+    // name = words separated by one whitespace, word = letter followed by letters or apostrophes
+    // same language as ^[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*(\s[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*)*$ (CASE_INSENSITIVE), checked in one pass
     public static boolean isValid(String str) {
-        Matcher matcher = PATTERN.matcher(str);
-        return matcher.matches();
+        return isValid(str, 0, str.length());
+    }
+
+    // check str[from, to) without copying it
+    public static boolean isValid(String str, int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        boolean wordStart = true;
+        for (int i = from; i < to; i++) {
+            char c = str.charAt(i);
+            if (wordStart) {
+                if (!isLetter(c)) {
+                    return false;
+                }
+                wordStart = false;
+            } else if (isWhitespace(c)) {
+                wordStart = true;
+            } else if (c != '\'' && !isLetter(c)) {
+                return false;
+            }
+        }
+        return !wordStart;
+    }
+
+    // [a-zÀ-ÿ] with CASE_INSENSITIVE : ASCII letters of both cases & U+00C0..U+00FF
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '\u00C0' && c <= '\u00FF');
+    }
+
+    // regex \s : [ \t\n\x0B\f\r]
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // setting from system property mealplanner.<name> or environment variable MEALPLANNER_<NAME>
+    public static String getSetting(String name, String defaultValue) {
+        String value = System.getProperty("mealplanner." + name);
+        if (value == null) {
+            value = System.getenv("MEALPLANNER_" + name.toUpperCase().replace('.', '_'));
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    // today, or the date of setting today (yyyy-mm-dd) to replay or backfill other weeks
+    public static LocalDate today() {
+        String today = getSetting("today", null);
+        return today == null ? LocalDate.now() : LocalDate.parse(today);
+    }
+
+    // Monday of the week of date (weeks of the plan start on Monday, see Main.daysOfWeek)
+    public static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    // one virtual thread per task when the runtime has them (Java 21+), else a fixed pool of platform threads
+    public static ExecutorService newTaskExecutor(int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(fallbackThreads);
+        }
+    }
+
+    // value at percentile (0-100) of sorted values
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+    }
+
+    // split comma separated ingredients -> null if one of them is not valid
+    // same result as input.split(",") + trim() + isValid(), one substring per valid ingredient only
+    public static List<String> parseIngredients(String input) {
+        if (input.isEmpty()) {
+            return null; // "".split(",") -> [""]
+        }
+        int end = input.length();
+        while (end > 0 && input.charAt(end - 1) == ',') {
+            end--; // split() drops trailing empty strings
+        }
+        if (end == 0) {
+            return new ArrayList<>();
+        }
+        return parseItems(input, end, (text, start, stop) -> isValid(text, start, stop) ? text.substring(start, stop) : null);
+    }
+
+    // "flour 500 g, egg 2, milk" -> [flour 500 g, egg x2, milk x1] (amount after the name, one piece if missing)
+    // amount = number + unit ("500 g", "500g", "1.5 kg", "2 tbsp") or number of pieces -> null if one item is not valid,
+    // empty (",,", "egg,") or of a zero amount ("egg 0")
+    public static List<Ingredient> parseAmounts(String input) {
+        return parseItems(input, input.length(), Utils::parseAmount);
+    }
+
+    // item of input[start, stop), trimmed -> null if not valid
+    private interface ItemParser<T> {
+        T parse(String input, int start, int stop);
+    }
+
+    // comma separated items of input[0, end) (at least one, empty ones included) -> null if one of them is not valid
+    // items are parsed in place, nothing is allocated per item but what parser returns
+    private static <T> List<T> parseItems(String input, int end, ItemParser<T> parser) {
+        List<T> items = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int comma = input.indexOf(',', from);
+            int to = comma < 0 || comma > end ? end : comma;
+            int start = from;
+            int stop = to;
+            while (start < stop && input.charAt(start) <= ' ') {
+                start++;
+            }
+            while (stop > start && input.charAt(stop - 1) <= ' ') {
+                stop--;
+            }
+            T item = parser.parse(input, start, stop);
+            if (item == null) {
+                return null;
+            }
+            items.add(item);
+            if (to == end) {
+                return items;
+            }
+            from = to + 1;
+        }
+    }
+
+    // "flour 500 g", "egg 2", "sugar 1500g", "milk" in input[start, stop) -> null if not valid
+    private static Ingredient parseAmount(String input, int start, int stop) {
+        int nameStop = stop;
+        Amount amount = Amount.ONE_PIECE;
+        int space = input.lastIndexOf(' ', stop - 1);
+        Amount.Unit unit = space > start ? Amount.Unit.of(input, space + 1, stop) : null;
+        if (unit != null) { // "500 g"
+            int restStop = trimEnd(input, start, space);
+            int numberSpace = input.lastIndexOf(' ', restStop - 1);
+            if (numberSpace > start) {
+                Amount number = Amount.of(input.substring(numberSpace + 1, restStop), unit);
+                if (number != null) { // else "tomato l" is a name
+                    amount = number;
+                    nameStop = trimEnd(input, start, numberSpace);
+                }
+            }
+        } else if (space > start && isNumberStart(input.charAt(space + 1))) { // "2", "500g"
+            int unitStart = space + 1;
+            while (unitStart < stop && isNumberStart(input.charAt(unitStart))) {
+                unitStart++;
+            }
+            unit = unitStart == stop ? Amount.Unit.PIECE : Amount.Unit.of(input, unitStart, stop);
+            amount = unit == null ? null : Amount.of(input.substring(space + 1, unitStart), unit);
+            if (amount == null) {
+                return null;
+            }
+            nameStop = trimEnd(input, start, space);
+        }
+        if (amount.isZero() || !isValid(input, start, nameStop)) {
+            return null;
+        }
+        return new Ingredient(input.substring(start, nameStop), amount);
+    }
+
+    // end of input[start, stop) without trailing whitespace
+    private static int trimEnd(String input, int start, int stop) {
+        while (stop > start && input.charAt(stop - 1) <= ' ') {
+            stop--;
+        }
+        return stop;
+    }
+
+    private static boolean isNumberStart(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
     }
 
     public static <E extends Enum<E>> boolean isValidEnumValue(Class<E> enumClass, String input) {
@@ -25,23 +197,4 @@ public class Utils {
         return false;
     }
 
-    // clear TABLE plan if not empty
-    public static void clearTableIfNotEmpty (Connection connection, String tableName) {
-        Statement statement;
-        ResultSet resultSet;
-        try {
-            statement = connection.createStatement();
-            String countQuery = "SELECT COUNT(*) AS rowcount FROM " + tableName;
-            resultSet = statement.executeQuery(countQuery);
-            resultSet.next();
-            int count = resultSet.getInt("rowcount");
-            if (count > 0) {
-                String truncateQuery = "DELETE FROM " + tableName;
-                statement.executeUpdate(truncateQuery);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+// week plan of one household as meal names [day][category], rendered once and kept until the plan changes
+// PLAN & AUTO fill it while planning -> displaying the plan they just saved needs no database work
+public class WeekView {
+
+    private final int householdId;
+    private final String[][] meals = new String[Main.daysOfWeek.length][Category.values().length];
+    private boolean loaded = false; // false : meals must be read from the repository
+    private String rendered;        // null : meals changed since last render
+
+    public WeekView(int householdId) {
+        this.householdId = householdId;
+    }
+
+    // plan is rebuilt from scratch -> empty view, nothing to read
+    public synchronized void clear() {
+        for (String[] day : meals) {
+            Arrays.fill(day, null);
+        }
+        loaded = true;
+        rendered = null;
+    }
+
+    // plan changed outside this view -> read again on next display
+    public synchronized void invalidate() {
+        loaded = false;
+        rendered = null;
+    }
+
+    public synchronized void set(int day, Category category, String meal) {
+        meals[day][category.ordinal()] = meal;
+        rendered = null;
+    }
+
+    // display plan day by day, category by category (one query only if the view is not loaded)
+    public void display(MealRepository repository) throws SQLException {
+        System.out.print(render(repository));
+    }
+
+    public synchronized String render(MealRepository repository) throws SQLException {
+        if (!loaded) {
+            String[][] week = repository.getWeekPlan(householdId);
+            for (int day = 0; day < meals.length; day++) {
+                System.arraycopy(week[day], 0, meals[day], 0, meals[day].length);
+            }
+            loaded = true;
+            rendered = null;
+        }
+        if (rendered == null) {
+            StringBuilder builder = new StringBuilder(512);
+            for (int day = 0; day < meals.length; day++) {
+                DayPlan dayPlan = new DayPlan(Main.daysOfWeek[day]);
+                dayPlan.setBreakfastMeal(meals[day][Category.BREAKFAST.ordinal()]);
+                dayPlan.setLunchMeal(meals[day][Category.LUNCH.ordinal()]);
+                dayPlan.setDinnerMeal(meals[day][Category.DINNER.ordinal()]);
+                builder.append(dayPlan).append(System.lineSeparator());
+            }
+            rendered = builder.toString();
+        }
+        return rendered;
+    }
+}
@@ -0,0 +1,314 @@
+package mealplanner;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// plan rows written on a background thread : addPlan only queues the row, the writer saves everything queued
+// while it was busy as one batch (one transaction per household)
+// plan & shopping list calls wait for the queue first (flush barrier) -> they see the plan as it was entered
+// catalog calls go straight to the repository
+public class WriteBehindMealRepository implements MealRepository {
+
+    private final MealRepository repository;
+    private final Thread writer;
+    private final Object lock = new Object();
+    private List<PlanWrite> queued = new ArrayList<>(); // guarded by lock
+    private long accepted = 0; // rows queued so far
+    private long done = 0; // rows written or failed
+    private final List<String> failures = new ArrayList<>(); // failed rows not reported yet
+    private boolean closed = false;
+    private boolean writerStopped = false; // the writer thread ended : nothing queued will be written any more
+    private Throwable writerError; // what ended it, null if closed or interrupted
+
+    private static class PlanWrite {
+        final int householdId;
+        final int slot; // day * 3 + category.ordinal()
+        final int mealId;
+
+        PlanWrite(int householdId, int slot, int mealId) {
+            this.householdId = householdId;
+            this.slot = slot;
+            this.mealId = mealId;
+        }
+
+        @Override
+        public String toString() {
+            Category category = Category.values()[slot % Category.values().length];
+            return String.format("%s %s (meal_id %d)", Main.daysOfWeek[slot / Category.values().length],
+                    category.toString().toLowerCase(), mealId);
+        }
+    }
+
+    public WriteBehindMealRepository(MealRepository repository) {
+        this.repository = repository;
+        this.writer = new Thread(this::run, "plan-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // writer thread : take the whole queue, save it, wake up flush()
+    // anything thrown ends the thread -> recorded for flush(), which would otherwise wait for it forever
+    private void run() {
+        try {
+            while (true) {
+                List<PlanWrite> batch;
+                synchronized (lock) {
+                    while (queued.isEmpty() && !closed) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (queued.isEmpty()) {
+                        return;
+                    }
+                    batch = queued;
+                    queued = new ArrayList<>();
+                }
+                List<String> failed = write(batch);
+                synchronized (lock) {
+                    done += batch.size();
+                    failures.addAll(failed);
+                    lock.notifyAll();
+                }
+            }
+        } catch (Throwable e) {
+            synchronized (lock) {
+                writerError = e;
+            }
+        } finally {
+            synchronized (lock) {
+                writerStopped = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // one addPlans per household, a failed batch is retried row by row -> only bad rows are lost
+    private List<String> write(List<PlanWrite> batch) {
+        Map<Integer, List<PlanWrite>> byHousehold = new LinkedHashMap<>();
+        for (PlanWrite write : batch) {
+            byHousehold.computeIfAbsent(write.householdId, key -> new ArrayList<>()).add(write);
+        }
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<Integer, List<PlanWrite>> entry : byHousehold.entrySet()) {
+            List<PlanWrite> writes = entry.getValue();
+            int[] slots = new int[writes.size()];
+            int[] mealIds = new int[writes.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = writes.get(i).slot;
+                mealIds[i] = writes.get(i).mealId;
+            }
+            try {
+                repository.addPlans(entry.getKey(), slots, mealIds);
+            } catch (SQLException | RuntimeException batchError) {
+                for (PlanWrite write : writes) {
+                    try {
+                        repository.addPlans(write.householdId, new int[]{write.slot}, new int[]{write.mealId});
+                    } catch (SQLException | RuntimeException e) {
+                        failed.add(write + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return failed;
+    }
+
+    // flush barrier : wait for every row queued before this call, then throw if any row could not be saved
+    @Override
+    public void flush() throws SQLException {
+        long start = System.nanoTime();
+        List<String> failed;
+        synchronized (lock) {
+            long target = accepted;
+            while (done < target) {
+                if (writerStopped) {
+                    throw new SQLException(String.format("Plan writer stopped, %d plan rows not saved%s", accepted - done,
+                            writerError == null ? "" : ": " + writerError), writerError);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for plan writes", e);
+                }
+            }
+            if (Metrics.ENABLED) {
+                Metrics.timer("WriteBehind", "flush wait").record(System.nanoTime() - start);
+            }
+            if (failures.isEmpty()) {
+                return;
+            }
+            failed = new ArrayList<>(failures);
+            failures.clear();
+        }
+        throw new SQLException(String.format("%d plan %s not saved: %s", failed.size(),
+                failed.size() == 1 ? "row was" : "rows were", String.join("; ", failed)));
+    }
+
+    @Override
+    public int[] addMeals(List<Meal> meals) throws SQLException {
+        return repository.addMeals(meals);
+    }
+
+    @Override
+    public boolean hasMeals(Category category) throws SQLException {
+        return repository.hasMeals(category);
+    }
+
+    @Override
+    public int forEachMeal(Category category, Consumer<Meal> consumer) throws SQLException {
+        return repository.forEachMeal(category, consumer);
+    }
+
+    @Override
+    public int forEachMeal(Category category, int offset, int limit, Consumer<Meal> consumer) throws SQLException {
+        return repository.forEachMeal(category, offset, limit, consumer);
+    }
+
+    @Override
+    public Map<String, Integer> getMealIdsByCategory(Category category) throws SQLException {
+        return repository.getMealIdsByCategory(category);
+    }
+
+    @Override
+    public List<String> getIngredientsByMealId(int mealId) throws SQLException {
+        return repository.getIngredientsByMealId(mealId);
+    }
+
+    @Override
+    public int getMaxMealId() throws SQLException {
+        return repository.getMaxMealId();
+    }
+
+    @Override
+    public long getCatalogVersion() throws SQLException {
+        return repository.getCatalogVersion();
+    }
+
+    @Override
+    public void clearPlan(int householdId) throws SQLException {
+        flush();
+        repository.clearPlan(householdId);
+    }
+
+    // queued -> returns at once, errors are reported by the next flush()
+    @Override
+    public void addPlan(int householdId, String day, Category category, int mealId) throws SQLException {
+        int dayIndex = Arrays.asList(Main.daysOfWeek).indexOf(day);
+        if (dayIndex < 0) {
+            throw new IllegalArgumentException("Unknown day " + day);
+        }
+        PlanWrite write = new PlanWrite(householdId, dayIndex * Category.values().length + category.ordinal(), mealId);
+        synchronized (lock) {
+            if (closed) {
+                throw new SQLException("Plan writer is closed");
+            }
+            if (writerStopped) {
+                throw new SQLException("Plan writer stopped" + (writerError == null ? "" : ": " + writerError), writerError);
+            }
+            queued.add(write);
+            accepted++;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void addPlans(int householdId, int[] slots, int[] mealIds) throws SQLException {
+        flush();
+        repository.addPlans(householdId, slots, mealIds);
+    }
+
+    @Override
+    public void savePlan(int householdId, int[] mealIds, LocalDate weekStart) throws SQLException {
+        flush();
+        repository.savePlan(householdId, mealIds, weekStart);
+    }
+
+    @Override
+    public boolean hasPlan(int householdId) throws SQLException {
+        flush();
+        return repository.hasPlan(householdId);
+    }
+
+    @Override
+    public String[][] getWeekPlan(int householdId) throws SQLException {
+        flush();
+        return repository.getWeekPlan(householdId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId) throws SQLException {
+        flush();
+        return repository.replanSlot(householdId, day, category, mealId);
+    }
+
+    @Override
+    public int replanSlot(int householdId, String day, Category category, int mealId, LocalDate weekStart)
+            throws SQLException {
+        flush();
+        return repository.replanSlot(householdId, day, category, mealId, weekStart);
+    }
+
+    @Override
+    public void setPantryItem(int householdId, String ingredient, Amount amount) throws SQLException {
+        flush();
+        repository.setPantryItem(householdId, ingredient, amount);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId) throws SQLException {
+        flush();
+        repository.buildShoppingList(householdId);
+    }
+
+    @Override
+    public void buildShoppingList(int householdId, LocalDate weekStart) throws SQLException {
+        flush();
+        repository.buildShoppingList(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachShoppingListItem(int householdId, Consumer<Ingredient> consumer) throws SQLException {
+        flush();
+        repository.forEachShoppingListItem(householdId, consumer);
+    }
+
+    @Override
+    public void recordWeek(int householdId, LocalDate weekStart) throws SQLException {
+        flush();
+        repository.recordWeek(householdId, weekStart);
+    }
+
+    @Override
+    public void forEachRangeItem(int householdId, LocalDate first, LocalDate last, Consumer<Ingredient> consumer)
+            throws SQLException {
+        flush();
+        repository.forEachRangeItem(householdId, first, last, consumer);
+    }
+
+    // rows still queued are written before the repository is closed
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+        repository.close();
+    }
+}
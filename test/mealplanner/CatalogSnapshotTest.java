@@ -0,0 +1,70 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// SNAPSHOT & --snapshot : catalog version check at startup, file replaced or left as it was
+class CatalogSnapshotTest {
+
+    @Test
+    void editedCatalogMakesSnapshotStale(@TempDir Path directory) throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            repository.addMeals(List.of(meal("omelette", "egg 2, milk 100 ml"), meal("salad", "lettuce, tomato")));
+            Path file = directory.resolve("catalog.snapshot");
+            assertEquals(2, CatalogSnapshot.write(repository, file));
+            CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+            assertTrue(new SnapshotMealRepository(snapshot, repository).isCurrent());
+
+            // a new ingredient name for the pantry is not a catalog change
+            repository.setPantryItem(1, "saffron", Amount.of("1", Amount.Unit.G));
+            assertTrue(new SnapshotMealRepository(snapshot, repository).isCurrent());
+
+            // edited without adding a meal : same highest meal_id, other catalog
+            execute(pool, "UPDATE meals SET meal = 'green salad' WHERE meal = 'salad'");
+            assertFalse(new SnapshotMealRepository(snapshot, repository).isCurrent());
+            CatalogSnapshot.write(repository, file);
+            snapshot = CatalogSnapshot.open(file);
+            assertTrue(new SnapshotMealRepository(snapshot, repository).isCurrent());
+
+            execute(pool, "DELETE FROM ingredients WHERE amount = 100000");
+            assertFalse(new SnapshotMealRepository(snapshot, repository).isCurrent());
+        }
+    }
+
+    @Test
+    void failedWriteLeavesNoTemporaryFile(@TempDir Path directory) throws Exception {
+        MealRepository repository = new InMemoryMealRepository();
+        repository.addMeals(List.of(meal("omelette", "egg 2")));
+        // a directory with a file in it cannot be replaced by the snapshot
+        Path target = Files.createDirectory(directory.resolve("catalog.snapshot"));
+        Files.createFile(target.resolve("keep"));
+
+        assertThrows(IOException.class, () -> CatalogSnapshot.write(repository, target));
+
+        assertEquals(List.of("catalog.snapshot"), List.of(directory.toFile().list()));
+    }
+
+    private static Meal meal(String name, String ingredients) {
+        return Meal.of(Category.LUNCH, name, Utils.parseAmounts(ingredients));
+    }
+
+    private static void execute(ConnectionPool pool, String sql) throws SQLException {
+        try (PooledConnection pooled = pool.acquire();
+             Statement statement = pooled.connection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
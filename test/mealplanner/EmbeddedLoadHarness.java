@@ -0,0 +1,13 @@
+package mealplanner;
+
+// gradle loadTestJdbc : LoadHarness on an empty database of the embedded PostgreSQL of the tests
+public class EmbeddedLoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        int status;
+        try (ConnectionPool pool = TestDatabase.create()) {
+            status = LoadHarness.run(args, pool);
+        }
+        System.exit(status);
+    }
+}
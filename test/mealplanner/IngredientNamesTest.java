@@ -0,0 +1,63 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// JdbcMealRepository : name_ids of a rolled back transaction must not stay in the dictionary
+class IngredientNamesTest {
+
+    @Test
+    void nameOfRolledBackMealIsInsertedAgain() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            // the ingredient rows fail after the names are inserted -> the whole meal is rolled back
+            execute(pool, "CREATE FUNCTION fail_ingredients() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+                            "BEGIN RAISE EXCEPTION 'ingredients refused'; END $$",
+                    "CREATE TRIGGER fail_ingredients BEFORE INSERT ON ingredients " +
+                            "FOR EACH ROW EXECUTE FUNCTION fail_ingredients()");
+            assertThrows(SQLException.class, () -> repository.addMeals(List.of(meal("omelette", "egg, saffron"))));
+            execute(pool, "DROP TRIGGER fail_ingredients ON ingredients");
+
+            int mealId = repository.addMeals(List.of(meal("omelette", "egg, saffron")))[0];
+
+            assertEquals(List.of("egg", "saffron"), repository.getIngredientsByMealId(mealId));
+        }
+    }
+
+    @Test
+    void pantryNameOfRolledBackTransactionIsInsertedAgain() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            execute(pool, "CREATE FUNCTION fail_pantry() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+                            "BEGIN RAISE EXCEPTION 'pantry refused'; END $$",
+                    "CREATE TRIGGER fail_pantry BEFORE INSERT ON pantry FOR EACH ROW EXECUTE FUNCTION fail_pantry()");
+            Amount amount = Amount.of("2", Amount.Unit.PIECE);
+            assertThrows(SQLException.class, () -> repository.setPantryItem(1, "saffron", amount));
+            execute(pool, "DROP TRIGGER fail_pantry ON pantry");
+
+            repository.setPantryItem(1, "saffron", amount);
+            int mealId = repository.addMeals(List.of(meal("paella", "rice, saffron")))[0];
+
+            assertEquals(List.of("rice", "saffron"), repository.getIngredientsByMealId(mealId));
+        }
+    }
+
+    private static Meal meal(String name, String ingredients) {
+        return Meal.of(Category.DINNER, name, Utils.parseAmounts(ingredients));
+    }
+
+    private static void execute(ConnectionPool pool, String... statements) throws SQLException {
+        try (PooledConnection pooled = pool.acquire();
+             Statement statement = pooled.connection().createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// a short run of each repository, every replayed command accepted
+class LoadHarnessTest {
+
+    private static final String[] ARGS = {"--meals", "600", "--rounds", "2", "--warmup", "1"};
+
+    @Test
+    void inMemoryRun() {
+        assertEquals(0, LoadHarness.run(ARGS, null));
+    }
+
+    @Test
+    void jdbcRun() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create()) {
+            assertEquals(0, LoadHarness.run(ARGS, pool));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Utils.isValid against the regex it replaced : same answer for every string tried
+class NameValidatorTest {
+
+    private static final Pattern REGEX = Pattern.compile("^[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*(\\s[a-zÀ-ÿ]+(['a-zÀ-ÿ]+)*)*$",
+            Pattern.CASE_INSENSITIVE);
+
+    // limits of the classes, whitespace the regex does or does not take as \s, letters matched only with UNICODE_CASE
+    private static final char[] ALPHABET = {'a', 'z', 'A', 'Z', 'm', 'Q', '@', '[', '`', '{', '0', '9', '-', '.',
+            '\'', '\'', ' ', ' ', '\t', '\n', '\u000B', '\f', '\r', '\u001C', '\u0085', '\u00A0', '\u2003',
+            '\u00BF', '\u00C0', '\u00D7', '\u00E9', '\u00F7', '\u00FF', '\u0100', '\u017F', '\u0130', '\u212A'};
+
+    @Test
+    void everyCharacterInEveryPosition() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String s = String.valueOf((char) c);
+            assertSame(s);
+            assertSame("a" + s);
+            assertSame(s + "b");
+            assertSame("ab" + s + "cd");
+            assertSame("ab " + s);
+        }
+    }
+
+    @Test
+    void randomStrings() {
+        Random random = new Random(20240501);
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 300_000; i++) {
+            s.setLength(0);
+            int length = random.nextInt(13);
+            for (int j = 0; j < length; j++) {
+                s.append(random.nextInt(8) == 0 ? (char) random.nextInt(0x300) : ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertSame(s.toString());
+        }
+    }
+
+    @Test
+    void rangeOfLongerString() {
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder s = new StringBuilder();
+            for (int j = 0; j < 10; j++) {
+                s.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            int from = random.nextInt(11);
+            int to = from + random.nextInt(11 - from);
+            String text = s.toString();
+            assertEquals(REGEX.matcher(text.substring(from, to)).matches(), Utils.isValid(text, from, to),
+                    () -> "[" + from + ", " + to + ") of " + escape(text));
+        }
+    }
+
+    private static void assertSame(String s) {
+        assertEquals(REGEX.matcher(s).matches(), Utils.isValid(s), () -> escape(s));
+    }
+
+    private static String escape(String s) {
+        StringBuilder escaped = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            escaped.append(c >= 0x20 && c < 0x7F ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+        }
+        return escaped.append('"').toString();
+    }
+}
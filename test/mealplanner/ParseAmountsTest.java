@@ -0,0 +1,63 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ParseAmountsTest {
+
+    @Test
+    void amountsAfterNames() {
+        assertEquals(List.of("flour 500 g", "egg x2", "milk", "olive oil 29.57 ml", "sugar 1.5 kg"),
+                texts(Utils.parseAmounts("flour 500 g, egg 2, milk,olive oil 2 tbsp , sugar 1500g")));
+    }
+
+    @Test
+    void unitsAnyCaseAndUnitNamesAsNames() {
+        assertEquals(List.of("flour 500 g", "milk 1 l", "tomato l", "sugar 1.5 kg"),
+                texts(Utils.parseAmounts("flour 500 G,milk 1 L, tomato l ,sugar 1.5 Kg")));
+    }
+
+    // answers the first version asked again with "Wrong format"
+    @Test
+    void noIngredientIsWrongFormat() {
+        assertNull(Utils.parseAmounts(""));
+        assertNull(Utils.parseAmounts("   "));
+        assertNull(Utils.parseAmounts(","));
+        assertNull(Utils.parseAmounts(",,,"));
+        assertNull(Utils.parseAmounts(" , , "));
+        assertNull(Utils.parseAmounts("egg,,milk"));
+        assertNull(Utils.parseAmounts(", egg"));
+        assertNull(Utils.parseAmounts("egg,"));
+        assertNull(Utils.parseAmounts("egg, milk, "));
+    }
+
+    @Test
+    void wrongItemIsWrongFormat() {
+        assertNull(Utils.parseAmounts("egg, 2"));
+        assertNull(Utils.parseAmounts("flour 500 furlongs2"));
+        assertNull(Utils.parseAmounts("egg 2x"));
+        assertNull(Utils.parseAmounts("fl0ur"));
+    }
+
+    @Test
+    void zeroAmountIsWrongFormat() {
+        assertNull(Utils.parseAmounts("egg 0"));
+        assertNull(Utils.parseAmounts("flour 0 g"));
+        assertNull(Utils.parseAmounts("sugar 0kg"));
+        assertNull(Utils.parseAmounts("salt 0.0001 g")); // 0 thousandths once rounded
+        assertNull(Utils.parseAmounts("milk 1 l, egg 0"));
+    }
+
+    private static List<String> texts(List<Ingredient> items) {
+        List<String> texts = new ArrayList<>();
+        for (Ingredient item : items) {
+            texts.add(item.text());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,150 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// PUT /plan & BATCH : concurrent savePlan calls of one household, each with its own week
+// PLAN & REPLAN : the plan change and its week of history are committed together
+class PlanHistoryTest {
+
+    private static final int SLOTS = Main.daysOfWeek.length * Category.values().length;
+    private static final LocalDate FIRST_WEEK = LocalDate.of(2025, 3, 3);
+    private static final LocalDate SECOND_WEEK = FIRST_WEEK.plusWeeks(1);
+
+    @Test
+    void historyHoldsThePlanSavedForItsWeek() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            // meals 0-1 of each category are planned for the first week, 2-3 for the second one
+            List<Meal> meals = new ArrayList<>();
+            for (Category category : Category.values()) {
+                for (int i = 0; i < 4; i++) {
+                    meals.add(new Meal(category, category.toString().toLowerCase() + " " + (char) ('a' + i),
+                            List.of("salt")));
+                }
+            }
+            int[] mealIds = repository.addMeals(meals);
+            Set<Integer> firstWeekMeals = new TreeSet<>();
+            Set<Integer> secondWeekMeals = new TreeSet<>();
+            for (int i = 0; i < mealIds.length; i++) {
+                (i % 4 < 2 ? firstWeekMeals : secondWeekMeals).add(mealIds[i]);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < 8; task++) {
+                Random random = new Random(task);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        boolean second = random.nextBoolean();
+                        int[] plan = new int[SLOTS];
+                        for (int slot = 0; slot < SLOTS; slot++) {
+                            plan[slot] = mealIds[4 * (slot % 3) + (second ? 2 : 0) + random.nextInt(2)];
+                        }
+                        repository.savePlan(7, plan, second ? SECOND_WEEK : FIRST_WEEK);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            List<Integer> plan = rows(pool, "SELECT meal_id FROM plan WHERE household_id = 7 " +
+                    "ORDER BY array_position(ARRAY['" + String.join("', '", Main.daysOfWeek) + "']::varchar[], plan_id), " +
+                    "category", null);
+            List<Integer> firstWeek = rows(pool, "SELECT meal_id FROM plan_history WHERE household_id = 7 " +
+                    "AND week_start = ? ORDER BY day, category", FIRST_WEEK);
+            List<Integer> secondWeek = rows(pool, "SELECT meal_id FROM plan_history WHERE household_id = 7 " +
+                    "AND week_start = ? ORDER BY day, category", SECOND_WEEK);
+            assertEquals(SLOTS, firstWeek.size());
+            assertEquals(SLOTS, secondWeek.size());
+            assertTrue(firstWeekMeals.containsAll(firstWeek), "a plan of the second week recorded in the first one");
+            assertTrue(secondWeekMeals.containsAll(secondWeek), "a plan of the first week recorded in the second one");
+            assertTrue(plan.equals(firstWeek) || plan.equals(secondWeek), "current plan missing from the history");
+        }
+    }
+
+    @Test
+    void replanIsRolledBackWhenItsWeekIsNotRecorded() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            int[] mealIds = repository.addMeals(List.of(new Meal(Category.BREAKFAST, "porridge", List.of("oats")),
+                    new Meal(Category.BREAKFAST, "pancakes", List.of("flour"))));
+            int[] plan = new int[SLOTS];
+            Arrays.fill(plan, mealIds[0]);
+            repository.savePlan(7, plan, FIRST_WEEK);
+            execute(pool, "CREATE FUNCTION fail_history() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+                            "BEGIN RAISE EXCEPTION 'history refused'; END $$",
+                    "CREATE TRIGGER fail_history BEFORE INSERT ON plan_history " +
+                            "FOR EACH ROW EXECUTE FUNCTION fail_history()");
+
+            assertThrows(SQLException.class, () -> repository.replanSlot(7, Main.daysOfWeek[0], Category.BREAKFAST,
+                    mealIds[1], FIRST_WEEK));
+            assertThrows(SQLException.class, () -> repository.buildShoppingList(7, SECOND_WEEK));
+            execute(pool, "DROP TRIGGER fail_history ON plan_history");
+
+            assertEquals("porridge", repository.getWeekPlan(7)[0][Category.BREAKFAST.ordinal()]);
+            assertEquals(List.of("oats x" + SLOTS), shoppingList(repository));
+            assertEquals(SLOTS, rows(pool, "SELECT meal_id FROM plan_history WHERE household_id = 7 " +
+                    "AND week_start = ?", FIRST_WEEK).size());
+            assertEquals(List.of(), rows(pool, "SELECT meal_id FROM plan_history WHERE household_id = 7 " +
+                    "AND week_start = ?", SECOND_WEEK));
+
+            repository.replanSlot(7, Main.daysOfWeek[0], Category.BREAKFAST, mealIds[1], FIRST_WEEK);
+
+            assertEquals(mealIds[1], rows(pool, "SELECT meal_id FROM plan_history WHERE household_id = 7 " +
+                    "AND week_start = ? ORDER BY day, category", FIRST_WEEK).get(0));
+        }
+    }
+
+    private static List<String> shoppingList(MealRepository repository) throws SQLException {
+        List<String> items = new ArrayList<>();
+        repository.forEachShoppingListItem(7, item -> items.add(item.text()));
+        return items;
+    }
+
+    private static void execute(ConnectionPool pool, String... statements) throws SQLException {
+        try (PooledConnection pooled = pool.acquire();
+             Statement statement = pooled.connection().createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private static List<Integer> rows(ConnectionPool pool, String sql, LocalDate week) throws SQLException {
+        List<Integer> mealIds = new ArrayList<>();
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare(sql);
+            if (week != null) {
+                statement.setObject(1, week);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    mealIds.add(resultSet.getInt(1));
+                }
+            }
+        }
+        return mealIds;
+    }
+}
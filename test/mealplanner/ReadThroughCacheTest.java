@@ -0,0 +1,42 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadThroughCacheTest {
+
+    @Test
+    void loadedValueIsCached() {
+        ReadThroughCache<String, Integer> cache = new ReadThroughCache<>("test");
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(1, cache.get("a", key -> loads.incrementAndGet()));
+        assertEquals(1, cache.get("a", key -> loads.incrementAndGet()));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    // the meals of a category added while their list was being read : the old list must not stay cached
+    @Test
+    void valueLoadedDuringInvalidateIsNotCached() {
+        ReadThroughCache<String, Integer> cache = new ReadThroughCache<>("test");
+        assertEquals(1, cache.get("a", key -> {
+            cache.invalidate(key);
+            return 1;
+        }));
+        assertEquals(2, cache.get("a", key -> 2));
+        assertEquals(2, cache.get("a", key -> 3));
+    }
+
+    @Test
+    void valueLoadedDuringClearIsNotCached() {
+        ReadThroughCache<String, Integer> cache = new ReadThroughCache<>("test");
+        assertEquals(1, cache.get("a", key -> {
+            cache.clear();
+            return 1;
+        }));
+        assertEquals(2, cache.get("a", key -> 2));
+    }
+}
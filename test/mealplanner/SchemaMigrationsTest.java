@@ -0,0 +1,111 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaMigrationsTest {
+
+    // tables as created by the first version (before schema_version) : names in ingredients, no household
+    private static final String[] BASELINE_SCHEMA = {
+            "CREATE TABLE meals (meal_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY, " +
+                    "category VARCHAR(10) NOT NULL, meal VARCHAR(255) NOT NULL)",
+            "CREATE TABLE ingredients (ingredient_id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY, " +
+                    "ingredient VARCHAR(255) NOT NULL, meal_id INTEGER NOT NULL REFERENCES meals(meal_id))",
+            "CREATE TABLE plan (plan_id VARCHAR(10), category VARCHAR(10) NOT NULL, " +
+                    "meal_id INTEGER NOT NULL REFERENCES meals(meal_id))",
+            "CREATE TABLE shoppingList (ingredient VARCHAR(255) PRIMARY KEY, quantity INT)",
+    };
+
+    @Test
+    void emptyDatabaseReachesLatestVersion() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create()) {
+            assertEquals(8, SchemaMigrations.latestVersion());
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.migrate(pool));
+            assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8"),
+                    query(pool, "SELECT version FROM schema_version ORDER BY version"));
+            assertEquals(List.of("0"), query(pool, "SELECT COUNT(*) FROM plan_history"));
+        }
+    }
+
+    @Test
+    void baselineSchemaKeepsItsData() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create()) {
+            execute(pool, BASELINE_SCHEMA);
+            execute(pool,
+                    "INSERT INTO meals (category, meal) VALUES ('BREAKFAST', 'omelette'), ('LUNCH', 'salad'), " +
+                            "('DINNER', 'soup')",
+                    "INSERT INTO ingredients (ingredient, meal_id) VALUES ('egg', 1), ('milk', 1), " +
+                            "('lettuce', 2), ('tomato', 2), ('egg', 2), ('tomato', 3), ('onion', 3)",
+                    // the lunch of Monday saved twice, a row without day : left by old versions
+                    "INSERT INTO plan (plan_id, category, meal_id) VALUES ('Monday', 'BREAKFAST', 1), " +
+                            "('Monday', 'LUNCH', 2), ('Monday', 'LUNCH', 2), ('Monday', 'DINNER', 3), " +
+                            "(NULL, 'DINNER', 3)",
+                    "INSERT INTO shoppingList (ingredient, quantity) VALUES ('egg', 7), ('flour', 1)");
+
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.migrate(pool));
+
+            assertEquals(List.of("egg", "lettuce", "milk", "onion", "tomato"),
+                    query(pool, "SELECT name FROM ingredient_names ORDER BY name"));
+            assertEquals(List.of("1 egg", "1 milk", "2 egg", "2 lettuce", "2 tomato", "3 onion", "3 tomato"),
+                    query(pool, "SELECT i.meal_id || ' ' || n.name FROM ingredients i " +
+                            "JOIN ingredient_names n ON n.name_id = i.name_id ORDER BY 1"));
+            assertEquals(List.of("0 Monday BREAKFAST 1", "0 Monday DINNER 3", "0 Monday LUNCH 2"),
+                    query(pool, "SELECT household_id || ' ' || plan_id || ' ' || category || ' ' || meal_id " +
+                            "FROM plan ORDER BY 1"));
+            // rebuilt from the plan in thousandths of a piece, the stale rows are gone
+            assertEquals(List.of("egg 2000 pc", "lettuce 1000 pc", "milk 1000 pc", "onion 1000 pc", "tomato 2000 pc"),
+                    query(pool, "SELECT n.name || ' ' || s.quantity || ' ' || s.unit FROM shoppingList s " +
+                            "JOIN ingredient_names n ON n.name_id = s.name_id WHERE s.household_id = 0 ORDER BY 1"));
+            assertEquals(List.of("0 0 BREAKFAST 1", "0 0 DINNER 3", "0 0 LUNCH 2"),
+                    query(pool, "SELECT household_id || ' ' || day || ' ' || category || ' ' || meal_id " +
+                            "FROM plan_history ORDER BY 1"));
+            assertEquals(List.of("t"), query(pool,
+                    "SELECT bool_and(week_start = date_trunc('week', CURRENT_DATE)::date) FROM plan_history"));
+        }
+    }
+
+    @Test
+    void secondRunIsNoOp() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create()) {
+            SchemaMigrations.migrate(pool);
+            List<String> versions = query(pool, "SELECT version || ' ' || applied_at FROM schema_version ORDER BY 1");
+            // any DDL of the second run fails it
+            execute(pool,
+                    "CREATE FUNCTION forbid_ddl() RETURNS event_trigger LANGUAGE plpgsql AS $$ " +
+                            "BEGIN RAISE EXCEPTION 'DDL while migrating: %', tg_tag; END $$",
+                    "CREATE EVENT TRIGGER forbid_ddl ON ddl_command_start EXECUTE FUNCTION forbid_ddl()");
+
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.migrate(pool));
+            assertEquals(versions, query(pool, "SELECT version || ' ' || applied_at FROM schema_version ORDER BY 1"));
+        }
+    }
+
+    private static void execute(ConnectionPool pool, String... statements) throws SQLException {
+        try (PooledConnection pooled = pool.acquire();
+             Statement statement = pooled.connection().createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    // first column of every row as text
+    private static List<String> query(ConnectionPool pool, String sql) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (PooledConnection pooled = pool.acquire();
+             Statement statement = pooled.connection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                values.add(resultSet.getString(1));
+            }
+        }
+        return values;
+    }
+}
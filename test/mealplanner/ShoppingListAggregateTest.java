@@ -0,0 +1,113 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// JdbcMealRepository.buildShoppingList (one aggregate query) against the per-meal loop it replaced
+class ShoppingListAggregateTest {
+
+    private static final int SLOTS = Main.daysOfWeek.length * Category.values().length;
+
+    @Test
+    void aggregateMatchesPerMealLoop() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            int[] mealIds = repository.addMeals(List.of(
+                    meal(Category.BREAKFAST, "omelette", "egg, milk, butter"),
+                    meal(Category.BREAKFAST, "porridge", "oats, milk, honey"),
+                    meal(Category.LUNCH, "salad", "lettuce, tomato, egg, olive oil"),
+                    meal(Category.LUNCH, "sandwich", "bread, butter, tomato, cheese"),
+                    meal(Category.DINNER, "soup", "tomato, onion, garlic"),
+                    meal(Category.DINNER, "risotto", "rice, onion, cheese, butter")));
+            // each meal planned several times, butter, tomato, onion ... shared by several meals
+            int[] plan = new int[SLOTS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                int category = slot % Category.values().length;
+                plan[slot] = mealIds[2 * category + (slot / 3 % 3 == 0 ? 1 : 0)];
+            }
+            int[] otherPlan = new int[SLOTS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                otherPlan[slot] = mealIds[2 * (slot % Category.values().length) + 1];
+            }
+            addPlan(repository, 1, plan);
+            addPlan(repository, 2, otherPlan);
+
+            repository.buildShoppingList(1);
+            repository.buildShoppingList(2);
+
+            assertEquals(perMealLoop(repository, plan), shoppingListRows(pool, 1));
+            assertEquals(perMealLoop(repository, otherPlan), shoppingListRows(pool, 2));
+        }
+    }
+
+    @Test
+    void aggregateSumsAmountsByUnit() throws Exception {
+        try (ConnectionPool pool = TestDatabase.create();
+             JdbcMealRepository repository = new JdbcMealRepository(pool)) {
+            int[] mealIds = repository.addMeals(List.of(
+                    meal(Category.BREAKFAST, "pancakes", "flour 200 g, milk 250 ml, egg 2"),
+                    meal(Category.LUNCH, "pasta", "flour 0.5 kg, egg 3, salt 1 tsp"),
+                    meal(Category.DINNER, "bread", "flour 1 kg, milk 1 cup, salt 2 tsp, egg")));
+            int[] plan = new int[SLOTS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                plan[slot] = mealIds[slot % Category.values().length];
+            }
+            addPlan(repository, 3, plan);
+
+            repository.buildShoppingList(3);
+
+            assertEquals(Map.of(
+                    "egg pc", 7 * 6_000L,
+                    "flour g", 7 * 1_700_000L,
+                    "milk ml", 7 * (250_000L + 236_588L),
+                    "salt ml", 7 * 3 * 4_929L), shoppingListRows(pool, 3));
+        }
+    }
+
+    private static Meal meal(Category category, String name, String ingredients) {
+        return Meal.of(category, name, Utils.parseAmounts(ingredients));
+    }
+
+    private static void addPlan(MealRepository repository, int householdId, int[] plan) throws SQLException {
+        int[] slots = new int[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            slots[slot] = slot;
+        }
+        repository.addPlans(householdId, slots, plan);
+    }
+
+    // the loop of the first version : for each planned meal, each of its ingredients adds one piece to its row
+    private static Map<String, Long> perMealLoop(MealRepository repository, int[] plan) throws SQLException {
+        Map<String, Long> rows = new TreeMap<>();
+        for (int mealId : plan) {
+            for (String ingredient : repository.getIngredientsByMealId(mealId)) {
+                rows.merge(ingredient + " pc", 1_000L, Long::sum);
+            }
+        }
+        return rows;
+    }
+
+    // "name unit" -> quantity of every row of the household
+    private static Map<String, Long> shoppingListRows(ConnectionPool pool, int householdId) throws SQLException {
+        Map<String, Long> rows = new TreeMap<>();
+        try (PooledConnection pooled = pool.acquire()) {
+            PreparedStatement statement = pooled.prepare("SELECT n.name, s.unit, s.quantity FROM shoppingList s " +
+                    "JOIN ingredient_names n ON n.name_id = s.name_id WHERE s.household_id = ?");
+            statement.setInt(1, householdId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.put(resultSet.getString("name") + " " + resultSet.getString("unit"), resultSet.getLong("quantity"));
+                }
+            }
+        }
+        return rows;
+    }
+}
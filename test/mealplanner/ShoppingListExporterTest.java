@@ -0,0 +1,44 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// SAVE : the file replaced through a temporary file has the mode FileWriter would have given it
+class ShoppingListExporterTest {
+
+    private static final ShoppingListExporter.Items ITEMS = consumer -> {
+        consumer.accept(new Ingredient("egg", Amount.of("2", Amount.Unit.PIECE)));
+        consumer.accept(new Ingredient("flour", Amount.of("1.25", Amount.Unit.KG)));
+    };
+
+    @Test
+    void newFileHasDefaultMode(@TempDir Path directory) throws Exception {
+        Path target = directory.resolve("list.txt");
+        Path created = Files.createFile(directory.resolve("created.txt"));
+
+        assertEquals(2, ShoppingListExporter.export(ITEMS, target, ShoppingListExporter.Format.TXT));
+
+        assertEquals(List.of("egg x2", "flour 1.25 kg"), Files.readAllLines(target));
+        assertEquals(Files.getPosixFilePermissions(created), Files.getPosixFilePermissions(target));
+        assertEquals(2, directory.toFile().list().length); // no temporary file left
+    }
+
+    @Test
+    void replacedFileKeepsItsMode(@TempDir Path directory) throws Exception {
+        Path target = Files.writeString(directory.resolve("list.txt"), "old\n");
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-rw-r--"));
+
+        ShoppingListExporter.export(ITEMS, target, ShoppingListExporter.Format.TXT);
+
+        assertEquals(List.of("egg x2", "flour 1.25 kg"), Files.readAllLines(target));
+        assertEquals(PosixFilePermissions.fromString("rw-rw-r--"), Files.getPosixFilePermissions(target));
+        assertEquals(1, directory.toFile().list().length);
+    }
+}
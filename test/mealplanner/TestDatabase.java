@@ -0,0 +1,44 @@
+package mealplanner;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// one embedded PostgreSQL for the whole test run (started by the first test that needs it), an empty database per call
+final class TestDatabase {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+    private static EmbeddedPostgres postgres;
+
+    private TestDatabase() {
+    }
+
+    // pool on a new empty database (no tables, no schema_version)
+    static ConnectionPool create() throws IOException, SQLException {
+        String name = "test_" + databases.incrementAndGet();
+        try (Connection connection = server().getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + name);
+        }
+        return new ConnectionPool(server().getJdbcUrl("postgres", name), "postgres", "", 4);
+    }
+
+    private static synchronized EmbeddedPostgres server() throws IOException {
+        if (postgres == null) {
+            postgres = EmbeddedPostgres.start();
+            EmbeddedPostgres started = postgres;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.close();
+                } catch (IOException ignored) {
+                    // the data directory is temporary
+                }
+            }));
+        }
+        return postgres;
+    }
+}
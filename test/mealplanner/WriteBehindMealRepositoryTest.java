@@ -0,0 +1,34 @@
+package mealplanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+// PLAN : a writer thread ended by an Error must fail the flush barrier instead of blocking it
+class WriteBehindMealRepositoryTest {
+
+    @Test
+    void flushReportsErrorOfWriter() {
+        Error error = new OutOfMemoryError("no heap for the batch");
+        WriteBehindMealRepository repository = new WriteBehindMealRepository(new InMemoryMealRepository() {
+            @Override
+            public void addPlans(int householdId, int[] slots, int[] mealIds) {
+                throw error;
+            }
+        });
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            repository.addPlan(Main.HOUSEHOLD_ID, "Monday", Category.LUNCH, 1);
+            SQLException flushed = assertThrows(SQLException.class, repository::flush);
+            assertSame(error, flushed.getCause());
+            // still reported, later rows refused
+            assertThrows(SQLException.class, repository::flush);
+            assertThrows(SQLException.class, () -> repository.addPlan(Main.HOUSEHOLD_ID, "Tuesday", Category.LUNCH, 1));
+            repository.close();
+        });
+    }
+}